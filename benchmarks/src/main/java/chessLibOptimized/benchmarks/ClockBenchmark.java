@@ -0,0 +1,66 @@
+package chessLibOptimized.benchmarks;
+
+import chessLibOptimized.Game;
+import chessLibOptimized.clock.GameClocks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// `clocks` running game clocks with flags from seconds to an hour away. moved is what every move costs, advance
+// is one tick of the ticker thread. A game whose flag falls is given new times and started again, so the number of
+// running clocks stays the same however long the run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClockBenchmark {
+
+    @Param({"100000"})
+    public int clocks;
+
+    private long now = 1_000L;
+    private GameClocks gameClocks;
+    private Game[] games;
+
+    @Setup
+    public void setUp() {
+        gameClocks = new GameClocks(() -> now, 10L, 16, (game, color) -> restart(game));
+        games = new Game[clocks];
+        for (int i = 0; i < clocks; i++) {
+            games[i] = new Game();
+            restart(games[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean moved() {
+        // the position does not matter to the clocks, so no move is played and white is charged every time
+        return gameClocks.moved(games[ThreadLocalRandom.current().nextInt(games.length)]);
+    }
+
+    @Benchmark
+    public int advance() {
+        now += 10L;
+        return gameClocks.advance();
+    }
+
+    private void restart(Game game) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        game.setWhitesTime(1_000L + random.nextInt(3_600_000));
+        game.setBlacksTime(1_000L + random.nextInt(3_600_000));
+        gameClocks.start(game);
+    }
+}
@@ -0,0 +1,175 @@
+package chessLibOptimized.benchmarks;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Position;
+import chessLibOptimized.cache.PositionCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Throughput of the rules core over the Positions corpus. Run with -prof gc for bytes allocated per operation.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String phase;
+
+    private String[] fens;
+    private byte[][] fenBytes;
+    private byte[] fenOut;
+    private Game[] games;
+    // the same positions, answered from a PositionCache shared by all of them
+    private Game[] cachedGames;
+    private Game scratch;
+    private Position forkedPosition;
+    private Board forkedBoard;
+    private int[] buffer;
+
+    // positions that have a legal move, and the move replayed on each of them
+    private Game[] movable;
+    private int[] moves;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        fens = Positions.forPhase(phase);
+        fenBytes = new byte[fens.length][];
+        for (int i = 0; i < fens.length; i++) {
+            fenBytes[i] = fens[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        fenOut = new byte[Fen.MAX_LENGTH];
+        games = new Game[fens.length];
+        buffer = new int[Moves.MAX_MOVES];
+        List<Game> movableGames = new ArrayList<>();
+        List<Integer> movableMoves = new ArrayList<>();
+        for (int i = 0; i < fens.length; i++) {
+            games[i] = new Game();
+            games[i].loadGameFromFen(fens[i]);
+            int move = pickMove(games[i]);
+            if (move != Moves.NONE) {
+                Game game = new Game();
+                game.loadGameFromFen(fens[i]);
+                movableGames.add(game);
+                movableMoves.add(move);
+            }
+        }
+        PositionCache cache = new PositionCache(1 << 16);
+        cachedGames = new Game[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            cachedGames[i] = new Game();
+            cachedGames[i].loadGameFromFen(fens[i]);
+            cachedGames[i].setPositionCache(cache);
+        }
+        movable = movableGames.toArray(new Game[0]);
+        moves = movableMoves.stream().mapToInt(Integer::intValue).toArray();
+        scratch = new Game();
+        forkedPosition = new Position();
+        forkedBoard = new Board();
+    }
+
+    @Benchmark
+    public boolean isCheck() {
+        Game game = games[next(games.length)];
+        return game.isCheck(game.getTurn());
+    }
+
+    @Benchmark
+    public boolean isMate() {
+        Game game = games[next(games.length)];
+        return game.isMate(game.getTurn());
+    }
+
+    @Benchmark
+    public boolean isMateCached() {
+        Game game = cachedGames[next(cachedGames.length)];
+        return game.isMate(game.getTurn());
+    }
+
+    @Benchmark
+    public int generateLegalMoves() {
+        return games[next(games.length)].generateLegalMoves(buffer);
+    }
+
+    @Benchmark
+    public int generateLegalMovesCached() {
+        return cachedGames[next(cachedGames.length)].generateLegalMoves(buffer);
+    }
+
+    // move and undoLastMove are measured as a pair so every invocation starts from the same position
+    @Benchmark
+    public boolean moveAndUndo() {
+        int i = next(movable.length);
+        Game game = movable[i];
+        int move = moves[i];
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        boolean moved = game.move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.promotion(move));
+        game.undoLastMove();
+        return moved;
+    }
+
+    @Benchmark
+    public Game loadGameFromFen() {
+        scratch.loadGameFromFen(fens[next(fens.length)]);
+        return scratch;
+    }
+
+    @Benchmark
+    public Game loadGameFromFenBytes() {
+        byte[] fen = fenBytes[next(fenBytes.length)];
+        scratch.loadGameFromFen(fen, 0, fen.length);
+        return scratch;
+    }
+
+    @Benchmark
+    public int toFen() {
+        return games[next(games.length)].toFen(fenOut, 0);
+    }
+
+    // forking a live game for analysis, into a reused Position and into a reused Board ready to search
+    @Benchmark
+    public Position forkPosition() {
+        games[next(games.length)].copyPositionInto(forkedPosition);
+        return forkedPosition;
+    }
+
+    @Benchmark
+    public Board forkBoard() {
+        games[next(games.length)].copyBoardInto(forkedBoard);
+        return forkedBoard;
+    }
+
+    private int next(int length) {
+        if (++index >= length) {
+            index = 0;
+        }
+        return index;
+    }
+
+    private int pickMove(Game game) {
+        int n = game.generateLegalMoves(buffer);
+        return n == 0 ? Moves.NONE : buffer[0];
+    }
+}
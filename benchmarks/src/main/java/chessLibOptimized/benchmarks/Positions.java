@@ -0,0 +1,41 @@
+package chessLibOptimized.benchmarks;
+
+// Fixed benchmark corpus. Every phase mixes quiet positions with a couple where the side to move is in check,
+// so isMate has to do real work on some of them.
+public class Positions {
+    public static final String[] OPENING = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+            "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w KQkq - 1 5",
+            "rnbqkb1r/ppp2ppp/4pn2/3p2B1/2PP4/2N5/PP2PPPP/R2QKBNR b KQkq - 3 4",
+            "rnbqkbnr/ppp1pppp/8/1B1p4/4P3/8/PPPP1PPP/RNBQK1NR b KQkq - 1 2",
+            "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3"
+    };
+
+    public static final String[] MIDDLEGAME = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP2BPPP/R1BQ1RK1 w - - 0 8",
+            "2r2rk1/pp1bqpp1/2n1p2p/3pP3/3P4/P1PB1N2/2Q2PPP/R4RK1 w - - 0 17",
+            "r1bqk2r/pppp1Bpp/2n2n2/2b1p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 0 4",
+            "r1b1k1nr/pppp1ppp/2n5/2b1p3/2B1P2q/2N2Q2/PPPP1PPP/R1B1K1NR w KQkq - 6 5"
+    };
+
+    public static final String[] ENDGAME = {
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1",
+            "8/5pk1/6p1/7p/7P/6P1/4RPK1/r7 w - - 0 40",
+            "3R2k1/5ppp/8/8/8/8/5PPP/6K1 b - - 1 1",
+            "7k/8/6KQ/8/8/8/8/8 b - - 0 1",
+            "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1"
+    };
+
+    public static String[] forPhase(String phase) {
+        return switch (phase) {
+            case "opening" -> OPENING;
+            case "middlegame" -> MIDDLEGAME;
+            case "endgame" -> ENDGAME;
+            default -> throw new IllegalArgumentException("unknown phase " + phase);
+        };
+    }
+}
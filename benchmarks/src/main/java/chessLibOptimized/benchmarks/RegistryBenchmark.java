@@ -0,0 +1,86 @@
+package chessLibOptimized.benchmarks;
+
+import chessLibOptimized.Game;
+import chessLibOptimized.registry.GameRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// A registry holding `games` live games, hit from every core at once. Lookups go by game and by player, and churn
+// removes a game and registers it again so the registry stays the same size. Compare runs with -t 1 and -t max for
+// scaling.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class RegistryBenchmark {
+
+    @Param({"100000"})
+    public int games;
+
+    private GameRegistry registry;
+    private Game[] all;
+    private UUID[] players;
+
+    @Setup
+    public void setUp() {
+        registry = new GameRegistry(games);
+        all = new Game[games];
+        // about ten games per player, like a busy server
+        players = new UUID[Math.max(games / 5, 2)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < games; i++) {
+            all[i] = registry.create(players[random.nextInt(players.length)], players[random.nextInt(players.length)]);
+        }
+    }
+
+    @Benchmark
+    public Game getById() {
+        return registry.get(all[ThreadLocalRandom.current().nextInt(all.length)].getUuid());
+    }
+
+    @Benchmark
+    public List<Game> gamesOfPlayer() {
+        return registry.gamesOf(players[ThreadLocalRandom.current().nextInt(players.length)]);
+    }
+
+    @Benchmark
+    public boolean removeAndRegister() {
+        Game game = all[ThreadLocalRandom.current().nextInt(all.length)];
+        // another thread may hold the same game between its remove and register, then this one skips it
+        return registry.remove(game.getUuid()) != null && registry.register(game);
+    }
+
+    // nine lookups for every write, closer to what a game server sees
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int op = random.nextInt(10);
+        if (op == 0) {
+            return removeAndRegister();
+        } else if (op < 4) {
+            return gamesOfPlayer();
+        }
+        return getById();
+    }
+}
@@ -0,0 +1,175 @@
+package chessLibOptimized;
+
+// Squares are numbered y * 8 + x, so a1 = 0, h1 = 7 and h8 = 63, which matches chessboard[x][y] in Game.
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // [Color.index(color)][square]
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    // fancy magic bitboards, every square owns a slice of the shared table starting at its offset
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    // [a * 64 + b], the squares strictly between a and b when they share a line, otherwise empty
+    private static final long[] BETWEEN = new long[64 * 64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int x = sq & 7;
+            int y = sq >>> 3;
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dy = -2; dy <= 2; dy++) {
+                    if (Math.abs(dx * dy) == 2) {
+                        KNIGHT_ATTACKS[sq] |= bit(x + dx, y + dy);
+                    } else if (Math.abs(dx) <= 1 && Math.abs(dy) <= 1 && (dx != 0 || dy != 0)) {
+                        KING_ATTACKS[sq] |= bit(x + dx, y + dy);
+                    }
+                }
+            }
+            PAWN_ATTACKS[0][sq] = bit(x - 1, y + 1) | bit(x + 1, y + 1);
+            PAWN_ATTACKS[1][sq] = bit(x - 1, y - 1) | bit(x + 1, y - 1);
+        }
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long bb = 1L << b;
+                if ((rookAttacks(a, 0L) & bb) != 0) {
+                    BETWEEN[a * 64 + b] = rookAttacks(a, bb) & rookAttacks(b, 1L << a);
+                } else if ((bishopAttacks(a, 0L) & bb) != 0) {
+                    BETWEEN[a * 64 + b] = bishopAttacks(a, bb) & bishopAttacks(b, 1L << a);
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static int square(int x, int y) {
+        return y * 8 + x;
+    }
+
+    public static long between(int a, int b) {
+        return BETWEEN[a * 64 + b];
+    }
+
+    public static long rookAttacks(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[sq] + (int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    public static long bishopAttacks(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[sq] + (int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    private static long bit(int x, int y) {
+        if (x < 0 || x > 7 || y < 0 || y > 7) {
+            return 0L;
+        }
+        return 1L << square(x, y);
+    }
+
+    private static long slidingAttacks(int[][] directions, int sq, long occupied) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int x = (sq & 7) + direction[0];
+            int y = (sq >>> 3) + direction[1];
+            while (x >= 0 && x <= 7 && y >= 0 && y <= 7) {
+                long b = 1L << square(x, y);
+                attacks |= b;
+                if ((occupied & b) != 0) {
+                    break;
+                }
+                x += direction[0];
+                y += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    // Searches the magic numbers at class load with a fixed seed per rank, so the tables are the same on every run.
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        long[] seeds = {728L, 10316L, 55013L, 32803L, 12281L, 15100L, 16645L, 255L};
+        int size = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            long edges = ((RANK_1 | RANK_8) & ~(RANK_1 << (8 * (sq >>> 3))))
+                    | ((FILE_A | FILE_H) & ~(FILE_A << (sq & 7)));
+            masks[sq] = slidingAttacks(directions, sq, 0L) & ~edges;
+            shifts[sq] = 64 - Long.bitCount(masks[sq]);
+            offsets[sq] = size;
+            size += 1 << Long.bitCount(masks[sq]);
+        }
+
+        long[] table = new long[size];
+        long[] occupancy = new long[4096];
+        long[] reference = new long[4096];
+        int[] epoch = new int[4096];
+        int attempt = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int n = 0;
+            long b = 0L;
+            do {
+                occupancy[n] = b;
+                reference[n] = slidingAttacks(directions, sq, b);
+                n++;
+                b = (b - masks[sq]) & masks[sq];
+            } while (b != 0);
+
+            long seed = seeds[sq >>> 3];
+            for (int i = 0; i < n; ) {
+                long magic;
+                do {
+                    seed = xorshift(seed);
+                    long r1 = seed * 2685821657736338717L;
+                    seed = xorshift(seed);
+                    long r2 = seed * 2685821657736338717L;
+                    seed = xorshift(seed);
+                    long r3 = seed * 2685821657736338717L;
+                    magic = r1 & r2 & r3;
+                } while (Long.bitCount((magic * masks[sq]) >>> 56) < 6);
+
+                ++attempt;
+                for (i = 0; i < n; i++) {
+                    int index = offsets[sq] + (int) ((occupancy[i] * magic) >>> shifts[sq]);
+                    if (epoch[index - offsets[sq]] < attempt) {
+                        epoch[index - offsets[sq]] = attempt;
+                        table[index] = reference[i];
+                    } else if (table[index] != reference[i]) {
+                        break;
+                    }
+                }
+                magics[sq] = magic;
+            }
+        }
+        return table;
+    }
+
+    private static long xorshift(long s) {
+        s ^= s >>> 12;
+        s ^= s << 25;
+        s ^= s >>> 27;
+        return s;
+    }
+}
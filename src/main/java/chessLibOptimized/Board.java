@@ -0,0 +1,896 @@
+package chessLibOptimized;
+
+import java.util.Arrays;
+
+import static chessLibOptimized.Bitboards.KING_ATTACKS;
+import static chessLibOptimized.Bitboards.KNIGHT_ATTACKS;
+import static chessLibOptimized.Bitboards.PAWN_ATTACKS;
+
+// Bitboard position behind Game: one word per piece type and color, occupancy words and a mailbox of piece codes.
+public class Board {
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // castling rights that survive a move touching the square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    // [Piece.typeIndex(type)], the material exchanged by see; the king is never captured, so it counts for nothing
+    public static final int[] SEE_VALUE = {100, 325, 325, 500, 975, 0};
+    // type indexes from the least to the most valuable attacker
+    private static final int[] SEE_ORDER = {0, 2, 1, 3, 4, 5};
+    // swap list of see, one entry per capture in the exchange, reused by every call
+    private final int[] seeGains = new int[32];
+
+    // bits of valid, set while the cached value is up to date
+    private static final int WHITE_ATTACKS = 1;
+    private static final int BLACK_ATTACKS = 2;
+    private static final int CHECKERS = 4;
+    private static final int MASKS = 8;
+    // what depends on the side to move as well as on the pieces
+    private static final int SIDE_DEPENDENT = CHECKERS | MASKS;
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            CASTLING_MASK[i] = ALL_CASTLING;
+        }
+        CASTLING_MASK[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLING_MASK[7] &= ~WHITE_KING_SIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEEN_SIDE;
+        CASTLING_MASK[63] &= ~BLACK_KING_SIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+    }
+
+    // [Piece.index(piece)]
+    private final long[] pieces = new long[12];
+    // [Color.index(color)]
+    private final long[] colors = new long[2];
+    private long occupied;
+    private final int[] squares = new int[64];
+    // [Color.index(color)], -1 while the side has no king on the board
+    private final int[] kingSquares = {-1, -1};
+
+    private int sideToMove = Color.WHITE;
+    private int castlingRights = ALL_CASTLING;
+    private int enPassantSquare = -1;
+
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    private long hash = Zobrist.stateKey(Color.WHITE, ALL_CASTLING, -1);
+
+    // Evaluation terms summed over the pieces, kept up to date by put and remove: material (SEE_VALUE) and the
+    // middlegame and endgame piece-square scores from white's side, and the game phase of Evaluation.
+    private int material;
+    private int middlegame;
+    private int endgame;
+    private int phase;
+
+    // Squares attacked by each side [Color.index(color)], the pieces checking the side to move and the legality
+    // masks of its moves, worked out on first use and kept until the pieces or the side to move change, so repeated
+    // check and attack queries on one position are a single mask test.
+    private int valid;
+    private final long[] attacks = new long[2];
+    private long checkers;
+    // Destinations that deal with the check, everything when there is none and nothing in double check. Pieces
+    // pinned to the king may only move along pinRays[square], the line to the pinning piece included. The king
+    // may not go to kingDanger, the enemy attacks seen through the king itself.
+    private long checkMask;
+    private long pinned;
+    private final long[] pinRays = new long[64];
+    private long kingDanger;
+
+    // Undo stack, one entry per move or null move made and not yet taken back. A state packs what the move
+    // itself cannot tell: castling rights, en passant square + 1 << 4, captured piece << 11 and the halfmove
+    // clock << 19. The key from before the move is restored as is rather than recomputed.
+    private int[] undoStates = new int[256];
+    private long[] undoKeys = new long[256];
+    private int undoSize;
+
+    public void setUpStartingPosition() {
+        clear();
+        int[] backRank = {Piece.ROOK, Piece.KNIGHT, Piece.BISHOP, Piece.QUEEN, Piece.KING, Piece.BISHOP, Piece.KNIGHT, Piece.ROOK};
+        for (int x = 0; x < 8; x++) {
+            put(x, backRank[x] ^ Color.WHITE);
+            put(8 + x, Piece.PAWN ^ Color.WHITE);
+            put(48 + x, Piece.PAWN ^ Color.BLACK);
+            put(56 + x, backRank[x] ^ Color.BLACK);
+        }
+        setSideToMove(Color.WHITE);
+        setCastlingRights(ALL_CASTLING);
+        setEnPassantSquare(-1);
+    }
+
+    public void clear() {
+        for (int i = 0; i < 12; i++) {
+            pieces[i] = 0L;
+        }
+        colors[0] = 0L;
+        colors[1] = 0L;
+        occupied = 0L;
+        for (int i = 0; i < 64; i++) {
+            squares[i] = 0;
+        }
+        kingSquares[0] = -1;
+        kingSquares[1] = -1;
+        material = 0;
+        middlegame = 0;
+        endgame = 0;
+        phase = 0;
+        invalidateAttacks();
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        undoSize = 0;
+        hash = Zobrist.stateKey(sideToMove, castlingRights, enPassantSquare);
+    }
+
+    public void put(int sq, int piece) {
+        long b = 1L << sq;
+        int index = Piece.index(piece);
+        pieces[index] |= b;
+        colors[Color.index(Piece.getPieceColor(piece))] |= b;
+        occupied |= b;
+        squares[sq] = piece;
+        hash ^= Zobrist.PIECES[index * 64 + sq];
+        if (Piece.getPieceType(piece) == Piece.KING) {
+            kingSquares[Color.index(Piece.getPieceColor(piece))] = sq;
+        }
+        material += Evaluation.MATERIAL[index];
+        middlegame += Evaluation.MG[index * 64 + sq];
+        endgame += Evaluation.EG[index * 64 + sq];
+        phase += Evaluation.PHASE[index];
+        invalidateAttacks();
+    }
+
+    public void remove(int sq) {
+        int piece = squares[sq];
+        if (piece != 0) {
+            long b = ~(1L << sq);
+            int index = Piece.index(piece);
+            pieces[index] &= b;
+            colors[Color.index(Piece.getPieceColor(piece))] &= b;
+            occupied &= b;
+            squares[sq] = 0;
+            hash ^= Zobrist.PIECES[index * 64 + sq];
+            if (Piece.getPieceType(piece) == Piece.KING) {
+                kingSquares[Color.index(Piece.getPieceColor(piece))] = -1;
+            }
+            material -= Evaluation.MATERIAL[index];
+            middlegame -= Evaluation.MG[index * 64 + sq];
+            endgame -= Evaluation.EG[index * 64 + sq];
+            phase -= Evaluation.PHASE[index];
+            invalidateAttacks();
+        }
+    }
+
+    public int pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    public long pieces(int color, int type) {
+        return pieces[Color.index(color) * 6 + Piece.typeIndex(type)];
+    }
+
+    public long pieces(int color) {
+        return colors[Color.index(color)];
+    }
+
+    public long occupied() {
+        return occupied;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int sideToMove) {
+        if (this.sideToMove != sideToMove) {
+            hash ^= Zobrist.SIDE;
+            valid &= ~SIDE_DEPENDENT;
+        }
+        this.sideToMove = sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        hash ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        if (this.enPassantSquare >= 0) {
+            hash ^= Zobrist.EN_PASSANT[this.enPassantSquare & 7];
+        }
+        if (enPassantSquare >= 0) {
+            hash ^= Zobrist.EN_PASSANT[enPassantSquare & 7];
+        }
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    // plies since the last capture or pawn move
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    // starts at 1 and goes up after every black move
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // Zobrist key of the position, maintained incrementally by every change to the board
+    public long hash() {
+        return hash;
+    }
+
+    // white's material minus black's, in SEE_VALUE
+    public int getMaterial() {
+        return material;
+    }
+
+    // piece-square scores including material, from white's side
+    public int getMiddlegameScore() {
+        return middlegame;
+    }
+
+    public int getEndgameScore() {
+        return endgame;
+    }
+
+    // Evaluation.TOTAL_PHASE with all minor and major pieces on the board, 0 with only kings and pawns; more with
+    // promoted pieces
+    public int getPhase() {
+        return phase;
+    }
+
+    // kept up to date by put and remove, -1 when the side has no king
+    public int kingSquare(int color) {
+        return kingSquares[Color.index(color)];
+    }
+
+    // all pieces of both colors attacking sq, with sliders seeing through everything not in occ
+    public long attackersTo(int sq, long occ) {
+        long bishops = pieces[1] | pieces[4] | pieces[7] | pieces[10];
+        long rooks = pieces[3] | pieces[4] | pieces[9] | pieces[10];
+        return (PAWN_ATTACKS[1][sq] & pieces[0])
+                | (PAWN_ATTACKS[0][sq] & pieces[6])
+                | (KNIGHT_ATTACKS[sq] & (pieces[2] | pieces[8]))
+                | (KING_ATTACKS[sq] & (pieces[5] | pieces[11]))
+                | (Bitboards.bishopAttacks(sq, occ) & bishops)
+                | (Bitboards.rookAttacks(sq, occ) & rooks);
+    }
+
+    // pieces of byColor attacking sq
+    public long attackers(int sq, int byColor) {
+        return attackersTo(sq, occupied) & colors[Color.index(byColor)];
+    }
+
+    // every square a piece of color attacks, own pieces included
+    public long attacks(int color) {
+        int c = Color.index(color);
+        if ((valid & WHITE_ATTACKS << c) == 0) {
+            attacks[c] = computeAttacks(color, occupied);
+            valid |= WHITE_ATTACKS << c;
+        }
+        return attacks[c];
+    }
+
+    // pieces giving check to the side to move
+    public long checkers() {
+        if ((valid & CHECKERS) == 0) {
+            int king = kingSquares[Color.index(sideToMove)];
+            checkers = king < 0 ? 0L : attackers(king, Color.opposite(sideToMove));
+            valid |= CHECKERS;
+        }
+        return checkers;
+    }
+
+    public boolean isAttacked(int sq, int byColor) {
+        return (attacks(byColor) & 1L << sq) != 0;
+    }
+
+    public boolean isCheck(int color) {
+        if (color == sideToMove) {
+            return checkers() != 0;
+        }
+        int king = kingSquares[Color.index(color)];
+        return king >= 0 && isAttacked(king, Color.opposite(color));
+    }
+
+    // pseudo-legal destinations of the piece on from, castling included
+    public long targets(int from) {
+        int piece = squares[from];
+        int color = Piece.getPieceColor(piece);
+        long own = colors[Color.index(color)];
+        switch (Piece.getPieceType(piece)) {
+            case Piece.PAWN:
+                return pawnTargets(from, color);
+            case Piece.KNIGHT:
+                return KNIGHT_ATTACKS[from] & ~own;
+            case Piece.BISHOP:
+                return Bitboards.bishopAttacks(from, occupied) & ~own;
+            case Piece.ROOK:
+                return Bitboards.rookAttacks(from, occupied) & ~own;
+            case Piece.QUEEN:
+                return Bitboards.queenAttacks(from, occupied) & ~own;
+            case Piece.KING:
+                return (KING_ATTACKS[from] & ~own) | castlingTargets(color);
+            default:
+                return 0L;
+        }
+    }
+
+    // Legal destinations of the piece on from, which must belong to the side to move. Pins and checks come from
+    // masks worked out once per position; only en passant, which takes a second piece off the board, is tested
+    // against the occupancy it leaves behind.
+    public long legalTargets(int from) {
+        if ((valid & MASKS) == 0) {
+            computeMasks();
+        }
+        long targets = targets(from);
+        int type = Piece.getPieceType(squares[from]);
+        if (type == Piece.KING) {
+            return targets & ~kingDanger;
+        }
+        long enPassant = 0L;
+        if (type == Piece.PAWN && enPassantSquare >= 0 && (targets & 1L << enPassantSquare) != 0) {
+            targets ^= 1L << enPassantSquare;
+            if (!leavesKingInCheck(from, enPassantSquare)) {
+                enPassant = 1L << enPassantSquare;
+            }
+        }
+        targets &= checkMask;
+        if ((pinned & 1L << from) != 0) {
+            targets &= pinRays[from];
+        }
+        return targets | enPassant;
+    }
+
+    // The legal move from -> to, or Moves.NONE. Promotion is the piece type a pawn reaching the last rank becomes.
+    public int findMove(int from, int to, int promotion) {
+        int piece = squares[from];
+        if (piece == 0) {
+            return Moves.NONE;
+        }
+        boolean legal = Piece.getPieceColor(piece) == sideToMove
+                ? (legalTargets(from) & 1L << to) != 0
+                : (targets(from) & 1L << to) != 0 && !leavesKingInCheck(from, to);
+        if (!legal) {
+            return Moves.NONE;
+        }
+        boolean promotes = Piece.getPieceType(piece) == Piece.PAWN && (to >= 56 || to < 8);
+        return encodeMove(from, to, promotes ? promotion : 0);
+    }
+
+    // Static exchange evaluation: the material the side making move wins, or loses when negative, once both sides
+    // have recaptured on its target square with their least valuable attackers for as long as that pays off.
+    // Sliders lined up behind a capturing piece join in as it leaves. Pins and promotions on recaptures are not
+    // looked at. Nothing is made on the board.
+    public int see(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        if ((Moves.flags(move) & Moves.CASTLING) != 0) {
+            return 0;
+        }
+        int[] gain = seeGains;
+        int captured = Moves.captured(move);
+        int promotion = Moves.promotion(move);
+        gain[0] = captured == 0 ? 0 : SEE_VALUE[Piece.typeIndex(captured)];
+        int onSquare = Piece.typeIndex(Moves.piece(move));
+        if (promotion != 0) {
+            onSquare = Piece.typeIndex(promotion);
+            gain[0] += SEE_VALUE[onSquare] - SEE_VALUE[0];
+        }
+
+        long occ = exchangeOccupancy(move);
+        long attackers = attackersTo(to, occ) & occ;
+        int stm = Piece.getPieceColor(squares[from]);
+        int d = 0;
+        while (d < gain.length - 1) {
+            stm = Color.opposite(stm);
+            long own = attackers & colors[Color.index(stm)];
+            if (own == 0) {
+                break;
+            }
+            int type = leastValuable(own, stm);
+            // the king only takes when nothing can take it back
+            if (type == 5 && (attackers & colors[Color.index(Color.opposite(stm))]) != 0) {
+                break;
+            }
+            ++d;
+            gain[d] = SEE_VALUE[onSquare] - gain[d - 1];
+            onSquare = type;
+            occ ^= Long.lowestOneBit(own & pieces[Color.index(stm) * 6 + type]);
+            attackers = (attackers | xrays(to, occ, type)) & occ;
+        }
+        // every side may stop taking back when that is better for it
+        while (d > 0) {
+            --d;
+            gain[d] = -Math.max(-gain[d], gain[d + 1]);
+        }
+        return gain[0];
+    }
+
+    // see(move) >= threshold, stopping as soon as the answer is known
+    public boolean seeGreaterOrEqual(int move, int threshold) {
+        if ((Moves.flags(move) & Moves.CASTLING) != 0) {
+            return 0 >= threshold;
+        }
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int captured = Moves.captured(move);
+        int promotion = Moves.promotion(move);
+        int onSquare = Piece.typeIndex(promotion != 0 ? promotion : Moves.piece(move));
+        // what is won if nothing recaptures, minus the threshold
+        int swap = (captured == 0 ? 0 : SEE_VALUE[Piece.typeIndex(captured)]) - threshold;
+        if (promotion != 0) {
+            swap += SEE_VALUE[onSquare] - SEE_VALUE[0];
+        }
+        if (swap < 0) {
+            return false;
+        }
+        // and what is left if the piece on the square is taken for nothing
+        swap = SEE_VALUE[onSquare] - swap;
+        if (swap <= 0) {
+            return true;
+        }
+
+        long occ = exchangeOccupancy(move);
+        long attackers = attackersTo(to, occ) & occ;
+        int stm = Piece.getPieceColor(squares[from]);
+        // 1 while the side that made the move is ahead of the threshold
+        int result = 1;
+        while (true) {
+            stm = Color.opposite(stm);
+            attackers &= occ;
+            long own = attackers & colors[Color.index(stm)];
+            if (own == 0) {
+                break;
+            }
+            int type = leastValuable(own, stm);
+            if (type == 5) {
+                return (attackers & colors[Color.index(Color.opposite(stm))]) != 0 ? result != 0 : result == 0;
+            }
+            result ^= 1;
+            swap = SEE_VALUE[type] - swap;
+            if (swap < result) {
+                break;
+            }
+            occ ^= Long.lowestOneBit(own & pieces[Color.index(stm) * 6 + type]);
+            attackers |= xrays(to, occ, type);
+        }
+        return result != 0;
+    }
+
+    public boolean hasLegalMove(int color) {
+        long own = colors[Color.index(color)];
+        if (color == sideToMove) {
+            for (; own != 0; own &= own - 1) {
+                if (legalTargets(Long.numberOfTrailingZeros(own)) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // the side not to move only comes up in Game.isMate for either color
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            long targets = targets(from);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (!leavesKingInCheck(from, to)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Writes the legal moves of the side to move into buffer from offset on and returns how many were written.
+    public int generateLegalMoves(int[] buffer, int offset) {
+        int count = offset;
+        int color = sideToMove;
+        long own = colors[Color.index(color)];
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            int type = Piece.getPieceType(squares[from]);
+            long targets = legalTargets(from);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (type == Piece.PAWN && (to >= 56 || to < 8)) {
+                    buffer[count++] = encodeMove(from, to, Piece.QUEEN);
+                    buffer[count++] = encodeMove(from, to, Piece.ROOK);
+                    buffer[count++] = encodeMove(from, to, Piece.BISHOP);
+                    buffer[count++] = encodeMove(from, to, Piece.KNIGHT);
+                } else {
+                    buffer[count++] = encodeMove(from, to, 0);
+                }
+            }
+        }
+        return count - offset;
+    }
+
+    public void makeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int flags = Moves.flags(move);
+        int piece = squares[from];
+        int color = Piece.getPieceColor(piece);
+        int captureSquare = (flags & Moves.EN_PASSANT) != 0 ? (color == Color.WHITE ? to - 8 : to + 8) : to;
+        int captured = squares[captureSquare];
+        push(captured);
+
+        remove(from);
+        remove(captureSquare);
+        if ((flags & Moves.CASTLING) != 0) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rook = squares[rookFrom];
+            remove(rookFrom);
+            put(to > from ? to - 1 : to + 1, rook);
+        }
+        int promotion = Moves.promotion(move);
+        put(to, promotion != 0 ? promotion ^ color : piece);
+
+        setCastlingRights(castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to]);
+        setEnPassantSquare((flags & Moves.DOUBLE_PUSH) != 0 ? (from + to) >>> 1 : -1);
+        halfmoveClock = captured != 0 || Piece.getPieceType(piece) == Piece.PAWN ? 0 : halfmoveClock + 1;
+        if (color == Color.BLACK) {
+            ++fullmoveNumber;
+        }
+        sideToMove = Color.opposite(color);
+        hash ^= Zobrist.SIDE;
+        valid &= ~SIDE_DEPENDENT;
+    }
+
+    // Takes back move, which must be the last move made on this board.
+    public void unmakeMove(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int flags = Moves.flags(move);
+        int color = Color.opposite(sideToMove);
+        int state = undoStates[--undoSize];
+
+        int piece = Moves.isPromotion(move) ? Piece.PAWN ^ color : squares[to];
+        remove(to);
+        put(from, piece);
+        int captured = (state >>> 11) & 0xFF;
+        if (captured != 0) {
+            put((flags & Moves.EN_PASSANT) != 0 ? (color == Color.WHITE ? to - 8 : to + 8) : to, captured);
+        }
+        if ((flags & Moves.CASTLING) != 0) {
+            int rookTo = to > from ? to - 1 : to + 1;
+            int rook = squares[rookTo];
+            remove(rookTo);
+            put(to > from ? to + 1 : to - 2, rook);
+        }
+        if (color == Color.BLACK) {
+            --fullmoveNumber;
+        }
+        sideToMove = color;
+        valid &= ~SIDE_DEPENDENT;
+        pop(state);
+    }
+
+    // passes the turn, for null move pruning
+    public void makeNullMove() {
+        push(0);
+        setEnPassantSquare(-1);
+        ++halfmoveClock;
+        sideToMove = Color.opposite(sideToMove);
+        hash ^= Zobrist.SIDE;
+        valid &= ~SIDE_DEPENDENT;
+    }
+
+    public void unmakeNullMove() {
+        sideToMove = Color.opposite(sideToMove);
+        valid &= ~SIDE_DEPENDENT;
+        pop(undoStates[--undoSize]);
+    }
+
+    // number of moves that can still be taken back
+    public int undoDepth() {
+        return undoSize;
+    }
+
+    private void push(int captured) {
+        if (undoSize == undoStates.length) {
+            undoStates = Arrays.copyOf(undoStates, undoSize * 2);
+            undoKeys = Arrays.copyOf(undoKeys, undoSize * 2);
+        }
+        // the clock only matters up to the 75 move rule, so 13 bits are plenty
+        int clock = Math.min(halfmoveClock, 0x1FFF);
+        undoStates[undoSize] = castlingRights | (enPassantSquare + 1) << 4 | captured << 11 | clock << 19;
+        undoKeys[undoSize++] = hash;
+    }
+
+    // restores the irreversible state and the key of the entry just taken off the stack
+    private void pop(int state) {
+        castlingRights = state & ALL_CASTLING;
+        enPassantSquare = ((state >>> 4) & 127) - 1;
+        halfmoveClock = state >>> 19;
+        hash = undoKeys[undoSize];
+    }
+
+    public void copyFrom(Board other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        kingSquares[0] = other.kingSquares[0];
+        kingSquares[1] = other.kingSquares[1];
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        material = other.material;
+        middlegame = other.middlegame;
+        endgame = other.endgame;
+        phase = other.phase;
+        invalidateAttacks();
+        // the copy starts a fresh history, moves made on other cannot be taken back on it
+        undoSize = 0;
+    }
+
+    // copyFrom keeping other's undo stack, so the moves made on other can be taken back on the copy
+    public void copyWithUndoFrom(Board other) {
+        copyFrom(other);
+        if (undoStates.length < other.undoSize) {
+            undoStates = new int[other.undoStates.length];
+            undoKeys = new long[other.undoKeys.length];
+        }
+        System.arraycopy(other.undoStates, 0, undoStates, 0, other.undoSize);
+        System.arraycopy(other.undoKeys, 0, undoKeys, 0, other.undoSize);
+        undoSize = other.undoSize;
+    }
+
+    public void copyFrom(Position position) {
+        long white = position.white();
+        occupied = position.occupied();
+        colors[0] = white;
+        colors[1] = occupied & ~white;
+        Arrays.fill(squares, 0);
+        for (int type = 0; type < 6; type++) {
+            long b = position.pieces(type);
+            pieces[type] = b & white;
+            pieces[6 + type] = b & ~white;
+            for (; b != 0; b &= b - 1) {
+                int sq = Long.numberOfTrailingZeros(b);
+                squares[sq] = 1 << type ^ ((white & 1L << sq) != 0 ? Color.WHITE : Color.BLACK);
+            }
+        }
+        material = 0;
+        middlegame = 0;
+        endgame = 0;
+        phase = 0;
+        for (int index = 0; index < 12; index++) {
+            for (long b = pieces[index]; b != 0; b &= b - 1) {
+                int sq = Long.numberOfTrailingZeros(b);
+                material += Evaluation.MATERIAL[index];
+                middlegame += Evaluation.MG[index * 64 + sq];
+                endgame += Evaluation.EG[index * 64 + sq];
+                phase += Evaluation.PHASE[index];
+            }
+        }
+        kingSquares[0] = pieces[5] == 0 ? -1 : Long.numberOfTrailingZeros(pieces[5]);
+        kingSquares[1] = pieces[11] == 0 ? -1 : Long.numberOfTrailingZeros(pieces[11]);
+        sideToMove = position.getSideToMove();
+        castlingRights = position.getCastlingRights();
+        enPassantSquare = position.getEnPassantSquare();
+        halfmoveClock = position.getHalfmoveClock();
+        fullmoveNumber = position.getFullmoveNumber();
+        hash = position.hash();
+        invalidateAttacks();
+        undoSize = 0;
+    }
+
+    // the occupancy once move has left its square and taken what it captures
+    private long exchangeOccupancy(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        long occ = occupied ^ 1L << from;
+        if ((Moves.flags(move) & Moves.EN_PASSANT) != 0) {
+            occ ^= 1L << (to > from ? to - 8 : to + 8);
+        }
+        return occ & ~(1L << to);
+    }
+
+    private int leastValuable(long attackers, int color) {
+        int base = Color.index(color) * 6;
+        for (int type : SEE_ORDER) {
+            if ((attackers & pieces[base + type]) != 0) {
+                return type;
+            }
+        }
+        throw new IllegalStateException("no attacker");
+    }
+
+    // sliders of either color behind a piece of type that just left, seen through occ
+    private long xrays(int sq, long occ, int type) {
+        long result = 0L;
+        if (type == 0 || type == 1 || type == 4) {
+            result |= Bitboards.bishopAttacks(sq, occ) & (pieces[1] | pieces[4] | pieces[7] | pieces[10]);
+        }
+        if (type == 3 || type == 4) {
+            result |= Bitboards.rookAttacks(sq, occ) & (pieces[3] | pieces[4] | pieces[9] | pieces[10]);
+        }
+        return result;
+    }
+
+    private void invalidateAttacks() {
+        valid = 0;
+    }
+
+    private void computeMasks() {
+        int us = sideToMove;
+        int them = Color.opposite(us);
+        int king = kingSquares[Color.index(us)];
+        pinned = 0L;
+        valid |= MASKS;
+        if (king < 0) {
+            checkMask = ~0L;
+            kingDanger = 0L;
+            return;
+        }
+        long checkers = checkers();
+        if (checkers == 0) {
+            checkMask = ~0L;
+            // no slider reaches the king, so it hides nothing
+            kingDanger = attacks(them);
+        } else {
+            checkMask = (checkers & checkers - 1) != 0
+                    ? 0L
+                    : checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers));
+            // a checking slider still sees the squares behind the king once it steps back along the ray
+            kingDanger = computeAttacks(them, occupied ^ 1L << king);
+        }
+        int t = Color.index(them) * 6;
+        long snipers = (Bitboards.rookAttacks(king, 0L) & (pieces[t + 3] | pieces[t + 4]))
+                | (Bitboards.bishopAttacks(king, 0L) & (pieces[t + 1] | pieces[t + 4]));
+        long own = colors[Color.index(us)];
+        for (; snipers != 0; snipers &= snipers - 1) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            long between = Bitboards.between(king, sniper);
+            long blockers = between & occupied;
+            if ((blockers & own) != 0 && (blockers & blockers - 1) == 0) {
+                pinned |= blockers;
+                pinRays[Long.numberOfTrailingZeros(blockers)] = between | 1L << sniper;
+            }
+        }
+    }
+
+    private long computeAttacks(int color, long occupied) {
+        int base = Color.index(color) * 6;
+        long pawns = pieces[base];
+        long result = color == Color.WHITE
+                ? (pawns << 7 & ~Bitboards.FILE_H) | (pawns << 9 & ~Bitboards.FILE_A)
+                : (pawns >>> 9 & ~Bitboards.FILE_H) | (pawns >>> 7 & ~Bitboards.FILE_A);
+        for (long b = pieces[base + 2]; b != 0; b &= b - 1) {
+            result |= KNIGHT_ATTACKS[Long.numberOfTrailingZeros(b)];
+        }
+        for (long b = pieces[base + 1] | pieces[base + 4]; b != 0; b &= b - 1) {
+            result |= Bitboards.bishopAttacks(Long.numberOfTrailingZeros(b), occupied);
+        }
+        for (long b = pieces[base + 3] | pieces[base + 4]; b != 0; b &= b - 1) {
+            result |= Bitboards.rookAttacks(Long.numberOfTrailingZeros(b), occupied);
+        }
+        for (long b = pieces[base + 5]; b != 0; b &= b - 1) {
+            result |= KING_ATTACKS[Long.numberOfTrailingZeros(b)];
+        }
+        return result;
+    }
+
+    private int encodeMove(int from, int to, int promotion) {
+        int type = Piece.getPieceType(squares[from]);
+        int captured = Piece.getPieceType(squares[to]);
+        int flags = 0;
+        if (type == Piece.PAWN) {
+            if (to == enPassantSquare && (to & 7) != (from & 7)) {
+                captured = Piece.PAWN;
+                flags = Moves.EN_PASSANT;
+            } else if (Math.abs(to - from) == 16) {
+                flags = Moves.DOUBLE_PUSH;
+            }
+        } else if (type == Piece.KING && Math.abs(to - from) == 2) {
+            flags = Moves.CASTLING;
+        }
+        return Moves.encode(from, to, type, captured, promotion, flags);
+    }
+
+    // Tests a pseudo-legal move against the king without touching the board, by looking at the occupancy it leaves
+    // behind. Only needed for en passant and for the side not to move, legalTargets covers the rest.
+    private boolean leavesKingInCheck(int from, int to) {
+        int piece = squares[from];
+        int color = Piece.getPieceColor(piece);
+        long removed = 1L << to;
+        long occ = (occupied ^ (1L << from)) | removed;
+        if (Piece.getPieceType(piece) == Piece.PAWN && to == enPassantSquare && (to & 7) != (from & 7)) {
+            long captured = 1L << (color == Color.WHITE ? to - 8 : to + 8);
+            occ ^= captured;
+            removed |= captured;
+        }
+        int kingSq = Piece.getPieceType(piece) == Piece.KING ? to : kingSquares[Color.index(color)];
+        if (kingSq < 0) {
+            return false;
+        }
+        long enemies = colors[Color.index(Color.opposite(color))] & ~removed;
+        return (attackersTo(kingSq, occ) & enemies) != 0;
+    }
+
+    private long pawnTargets(int from, int color) {
+        long targets = 0L;
+        long empty = ~occupied;
+        long them = colors[Color.index(Color.opposite(color))];
+        if (enPassantSquare >= 0 && color == sideToMove) {
+            them |= 1L << enPassantSquare;
+        }
+        if (color == Color.WHITE && from < 56) {
+            long single = (1L << (from + 8)) & empty;
+            targets = single;
+            if (from < 16) {
+                targets |= (single << 8) & empty;
+            }
+        } else if (color == Color.BLACK && from >= 8) {
+            long single = (1L << (from - 8)) & empty;
+            targets = single;
+            if (from >= 48) {
+                targets |= (single >>> 8) & empty;
+            }
+        }
+        return targets | (PAWN_ATTACKS[Color.index(color)][from] & them);
+    }
+
+    private long castlingTargets(int color) {
+        long targets = 0L;
+        int them = Color.opposite(color);
+        int rook = Piece.ROOK ^ color;
+        if (color == Color.WHITE) {
+            if ((castlingRights & (WHITE_KING_SIDE | WHITE_QUEEN_SIDE)) == 0 || kingSquares[0] != 4 || isAttacked(4, them)) {
+                return 0L;
+            }
+            if ((castlingRights & WHITE_KING_SIDE) != 0 && squares[7] == rook && (occupied & 0x60L) == 0
+                    && !isAttacked(5, them) && !isAttacked(6, them)) {
+                targets |= 1L << 6;
+            }
+            if ((castlingRights & WHITE_QUEEN_SIDE) != 0 && squares[0] == rook && (occupied & 0x0EL) == 0
+                    && !isAttacked(3, them) && !isAttacked(2, them)) {
+                targets |= 1L << 2;
+            }
+        } else {
+            if ((castlingRights & (BLACK_KING_SIDE | BLACK_QUEEN_SIDE)) == 0 || kingSquares[1] != 60 || isAttacked(60, them)) {
+                return 0L;
+            }
+            if ((castlingRights & BLACK_KING_SIDE) != 0 && squares[63] == rook && (occupied & (0x60L << 56)) == 0
+                    && !isAttacked(61, them) && !isAttacked(62, them)) {
+                targets |= 1L << 62;
+            }
+            if ((castlingRights & BLACK_QUEEN_SIDE) != 0 && squares[56] == rook && (occupied & (0x0EL << 56)) == 0
+                    && !isAttacked(59, them) && !isAttacked(58, them)) {
+                targets |= 1L << 58;
+            }
+        }
+        return targets;
+    }
+}
@@ -3,4 +3,13 @@ package chessLibOptimized;
 public class Color {
     public static final int WHITE = 64;
     public static final int BLACK = 128;
+
+    // 0 for white, 1 for black
+    public static int index(int color) {
+        return color >>> 7;
+    }
+
+    public static int opposite(int color) {
+        return color ^ (WHITE | BLACK);
+    }
 }
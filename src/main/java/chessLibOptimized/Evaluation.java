@@ -0,0 +1,152 @@
+package chessLibOptimized;
+
+// Tapered material and piece-square evaluation. Middlegame and endgame scores are blended by how much
+// non-pawn material is left, and the result is from the point of view of the side to move.
+public final class Evaluation {
+    // [Piece.typeIndex(type)]: pawn, bishop, knight, rook, queen, king
+    public static final int[] MG_VALUE = {82, 365, 337, 477, 1025, 0};
+    public static final int[] EG_VALUE = {94, 297, 281, 512, 936, 0};
+    static final int[] PHASE_WEIGHT = {0, 1, 1, 2, 4, 0};
+    static final int TOTAL_PHASE = 24;
+
+    // Piece-square tables from white's side, written with rank 8 on top; black reads them mirrored.
+    private static final int[] PAWN_MG = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] PAWN_EG = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_MG = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_EG = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // material plus square bonus, positive for white and negative for black: [Piece.index(piece) * 64 + square]
+    static final int[] MG = new int[12 * 64];
+    static final int[] EG = new int[12 * 64];
+    // [Piece.index(piece)], Board.SEE_VALUE signed like MG and EG, and PHASE_WEIGHT for both colors
+    static final int[] MATERIAL = new int[12];
+    static final int[] PHASE = new int[12];
+
+    static {
+        int[][] mg = {PAWN_MG, BISHOP, KNIGHT, ROOK, QUEEN, KING_MG};
+        int[][] eg = {PAWN_EG, BISHOP, KNIGHT, ROOK, QUEEN, KING_EG};
+        for (int type = 0; type < 6; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                MG[type * 64 + sq] = MG_VALUE[type] + mg[type][sq ^ 56];
+                EG[type * 64 + sq] = EG_VALUE[type] + eg[type][sq ^ 56];
+                MG[(6 + type) * 64 + sq] = -(MG_VALUE[type] + mg[type][sq]);
+                EG[(6 + type) * 64 + sq] = -(EG_VALUE[type] + eg[type][sq]);
+            }
+            MATERIAL[type] = Board.SEE_VALUE[type];
+            MATERIAL[6 + type] = -Board.SEE_VALUE[type];
+            PHASE[type] = PHASE_WEIGHT[type];
+            PHASE[6 + type] = PHASE_WEIGHT[type];
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    // O(1): the board keeps the sums up to date through every move and undo
+    public static int evaluate(Board board) {
+        return taper(board.getMiddlegameScore(), board.getEndgameScore(), board.getPhase(), board.getSideToMove());
+    }
+
+    // the same score summed over every piece, to check the incremental one
+    public static int evaluateFromScratch(Board board) {
+        int mg = 0;
+        int eg = 0;
+        int phase = 0;
+        for (int color = Color.WHITE; color <= Color.BLACK; color <<= 1) {
+            for (int type = Piece.PAWN; type <= Piece.KING; type <<= 1) {
+                int index = Piece.index(type ^ color);
+                long pieces = board.pieces(color, type);
+                phase += PHASE_WEIGHT[Piece.typeIndex(type)] * Long.bitCount(pieces);
+                while (pieces != 0) {
+                    int sq = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    mg += MG[index * 64 + sq];
+                    eg += EG[index * 64 + sq];
+                }
+            }
+        }
+        return taper(mg, eg, phase, board.getSideToMove());
+    }
+
+    static int taper(int mg, int eg, int phase, int sideToMove) {
+        phase = Math.min(phase, TOTAL_PHASE);
+        int score = (mg * phase + eg * (TOTAL_PHASE - phase)) / TOTAL_PHASE;
+        return sideToMove == Color.WHITE ? score : -score;
+    }
+}
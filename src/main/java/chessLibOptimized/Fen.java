@@ -0,0 +1,296 @@
+package chessLibOptimized;
+
+import java.nio.charset.StandardCharsets;
+
+// Forsyth-Edwards Notation without intermediate strings. The parser reads a CharSequence or an ASCII byte[] slice
+// directly into a Board, the writers append to a StringBuilder or fill a byte[].
+//
+// Castling, en passant and the two clocks may be left out, as many FEN producers do; they then default to no
+// castling, no en passant square, 0 and 1.
+public final class Fen {
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // longest FEN toFen can write, clocks included
+    public static final int MAX_LENGTH = 100;
+
+    private Fen() {
+    }
+
+    public static void parse(CharSequence fen, Board board) {
+        parse(fen, null, 0, fen.length(), board);
+    }
+
+    public static void parse(byte[] fen, int offset, int length, Board board) {
+        parse(null, fen, offset, offset + length, board);
+    }
+
+    // exactly one of chars and bytes is given
+    private static void parse(CharSequence chars, byte[] bytes, int start, int end, Board board) {
+        board.clear();
+        int i = start;
+        int x = 0;
+        int y = 7;
+        for (; i < end; i++) {
+            char c = charAt(chars, bytes, i);
+            if (c == ' ') {
+                break;
+            } else if (c == '/') {
+                if (x != 8 || y == 0) {
+                    throw invalid(chars, bytes, start, end, "bad rank " + (y + 1));
+                }
+                x = 0;
+                --y;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+            } else {
+                int piece = piece(c);
+                if (piece == 0 || x > 7) {
+                    throw invalid(chars, bytes, start, end, "bad piece placement at " + (i - start));
+                }
+                board.put(Bitboards.square(x++, y), piece);
+            }
+            if (x > 8) {
+                throw invalid(chars, bytes, start, end, "rank " + (y + 1) + " is too long");
+            }
+        }
+        if (x != 8 || y != 0) {
+            throw invalid(chars, bytes, start, end, "expected 8 ranks of 8 squares");
+        }
+
+        i = skipSpaces(chars, bytes, i, end);
+        char side = i < end ? charAt(chars, bytes, i++) : ' ';
+        if (side != 'w' && side != 'b') {
+            throw invalid(chars, bytes, start, end, "bad side to move");
+        }
+        board.setSideToMove(side == 'w' ? Color.WHITE : Color.BLACK);
+
+        int castlingRights = 0;
+        i = skipSpaces(chars, bytes, i, end);
+        for (; i < end; i++) {
+            char c = charAt(chars, bytes, i);
+            if (c == ' ') {
+                break;
+            }
+            switch (c) {
+                case 'K' -> castlingRights |= Board.WHITE_KING_SIDE;
+                case 'Q' -> castlingRights |= Board.WHITE_QUEEN_SIDE;
+                case 'k' -> castlingRights |= Board.BLACK_KING_SIDE;
+                case 'q' -> castlingRights |= Board.BLACK_QUEEN_SIDE;
+                case '-' -> {
+                }
+                default -> throw invalid(chars, bytes, start, end, "bad castling rights");
+            }
+        }
+        board.setCastlingRights(castlingRights);
+
+        int enPassantSquare = -1;
+        i = skipSpaces(chars, bytes, i, end);
+        if (i < end && charAt(chars, bytes, i) == '-') {
+            ++i;
+        } else if (i < end) {
+            char file = charAt(chars, bytes, i);
+            char rank = i + 1 < end ? charAt(chars, bytes, i + 1) : ' ';
+            if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+                throw invalid(chars, bytes, start, end, "bad en passant square");
+            }
+            enPassantSquare = Bitboards.square(file - 'a', rank - '1');
+            // the square a pawn of the side that just moved skipped, with that pawn right in front of it
+            int pawn = side == 'w' ? enPassantSquare - 8 : enPassantSquare + 8;
+            if (rank != (side == 'w' ? '6' : '3')
+                    || board.pieceAt(enPassantSquare) != 0
+                    || board.pieceAt(pawn) != ((side == 'w' ? Color.BLACK : Color.WHITE) ^ Piece.PAWN)) {
+                throw invalid(chars, bytes, start, end, "no pawn can be taken en passant on " + file + rank);
+            }
+            i += 2;
+        }
+        board.setEnPassantSquare(enPassantSquare);
+
+        int halfmoveClock = 0;
+        i = skipSpaces(chars, bytes, i, end);
+        if (i < end) {
+            halfmoveClock = number(chars, bytes, i, end, start);
+            i = skipDigits(chars, bytes, i, end);
+        }
+        board.setHalfmoveClock(halfmoveClock);
+
+        int fullmoveNumber = 1;
+        i = skipSpaces(chars, bytes, i, end);
+        if (i < end) {
+            fullmoveNumber = Math.max(number(chars, bytes, i, end, start), 1);
+            i = skipDigits(chars, bytes, i, end);
+        }
+        board.setFullmoveNumber(fullmoveNumber);
+
+        if (skipSpaces(chars, bytes, i, end) != end) {
+            throw invalid(chars, bytes, start, end, "unexpected text after the move number");
+        }
+    }
+
+    public static void toFen(Board board, StringBuilder sb) {
+        write(board, sb, null, 0);
+    }
+
+    // Writes the FEN of board as ASCII at offset and returns the number of bytes written, at most MAX_LENGTH.
+    public static int toFen(Board board, byte[] out, int offset) {
+        return write(board, null, out, offset) - offset;
+    }
+
+    public static String toFen(Board board) {
+        StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        toFen(board, sb);
+        return sb.toString();
+    }
+
+    // exactly one of sb and out is given, returns the position after the last byte written to out
+    private static int write(Board board, StringBuilder sb, byte[] out, int pos) {
+        for (int y = 7; y >= 0; y--) {
+            int empty = 0;
+            for (int x = 0; x < 8; x++) {
+                int piece = board.pieceAt(Bitboards.square(x, y));
+                if (piece == 0) {
+                    ++empty;
+                    continue;
+                }
+                if (empty > 0) {
+                    pos = put(sb, out, pos, (char) ('0' + empty));
+                    empty = 0;
+                }
+                pos = put(sb, out, pos, symbol(piece));
+            }
+            if (empty > 0) {
+                pos = put(sb, out, pos, (char) ('0' + empty));
+            }
+            if (y > 0) {
+                pos = put(sb, out, pos, '/');
+            }
+        }
+
+        pos = put(sb, out, pos, ' ');
+        pos = put(sb, out, pos, board.getSideToMove() == Color.WHITE ? 'w' : 'b');
+
+        pos = put(sb, out, pos, ' ');
+        int castlingRights = board.getCastlingRights();
+        if (castlingRights == 0) {
+            pos = put(sb, out, pos, '-');
+        } else {
+            if ((castlingRights & Board.WHITE_KING_SIDE) != 0) {
+                pos = put(sb, out, pos, 'K');
+            }
+            if ((castlingRights & Board.WHITE_QUEEN_SIDE) != 0) {
+                pos = put(sb, out, pos, 'Q');
+            }
+            if ((castlingRights & Board.BLACK_KING_SIDE) != 0) {
+                pos = put(sb, out, pos, 'k');
+            }
+            if ((castlingRights & Board.BLACK_QUEEN_SIDE) != 0) {
+                pos = put(sb, out, pos, 'q');
+            }
+        }
+
+        pos = put(sb, out, pos, ' ');
+        int enPassantSquare = board.getEnPassantSquare();
+        if (enPassantSquare < 0) {
+            pos = put(sb, out, pos, '-');
+        } else {
+            pos = put(sb, out, pos, (char) ('a' + (enPassantSquare & 7)));
+            pos = put(sb, out, pos, (char) ('1' + (enPassantSquare >>> 3)));
+        }
+
+        pos = put(sb, out, pos, ' ');
+        pos = putNumber(sb, out, pos, board.getHalfmoveClock());
+        pos = put(sb, out, pos, ' ');
+        return putNumber(sb, out, pos, board.getFullmoveNumber());
+    }
+
+    private static int put(StringBuilder sb, byte[] out, int pos, char c) {
+        if (sb != null) {
+            sb.append(c);
+        } else {
+            out[pos] = (byte) c;
+        }
+        return pos + 1;
+    }
+
+    private static int putNumber(StringBuilder sb, byte[] out, int pos, int value) {
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            pos = put(sb, out, pos, (char) ('0' + value / divisor % 10));
+        }
+        return pos;
+    }
+
+    private static char charAt(CharSequence chars, byte[] bytes, int i) {
+        return chars != null ? chars.charAt(i) : (char) (bytes[i] & 0xFF);
+    }
+
+    private static int skipSpaces(CharSequence chars, byte[] bytes, int i, int end) {
+        while (i < end && charAt(chars, bytes, i) == ' ') {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int skipDigits(CharSequence chars, byte[] bytes, int i, int end) {
+        while (i < end && Character.isDigit(charAt(chars, bytes, i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static int number(CharSequence chars, byte[] bytes, int i, int end, int start) {
+        int value = 0;
+        int digits = 0;
+        for (; i < end; i++, digits++) {
+            char c = charAt(chars, bytes, i);
+            if (c == ' ') {
+                break;
+            }
+            if (c < '0' || c > '9' || digits == 6) {
+                throw invalid(chars, bytes, start, end, "bad move counter");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int piece(char c) {
+        return switch (c) {
+            case 'P' -> Color.WHITE ^ Piece.PAWN;
+            case 'N' -> Color.WHITE ^ Piece.KNIGHT;
+            case 'B' -> Color.WHITE ^ Piece.BISHOP;
+            case 'R' -> Color.WHITE ^ Piece.ROOK;
+            case 'Q' -> Color.WHITE ^ Piece.QUEEN;
+            case 'K' -> Color.WHITE ^ Piece.KING;
+            case 'p' -> Color.BLACK ^ Piece.PAWN;
+            case 'n' -> Color.BLACK ^ Piece.KNIGHT;
+            case 'b' -> Color.BLACK ^ Piece.BISHOP;
+            case 'r' -> Color.BLACK ^ Piece.ROOK;
+            case 'q' -> Color.BLACK ^ Piece.QUEEN;
+            case 'k' -> Color.BLACK ^ Piece.KING;
+            default -> 0;
+        };
+    }
+
+    private static char symbol(int piece) {
+        char c = switch (Piece.getPieceType(piece)) {
+            case Piece.PAWN -> 'p';
+            case Piece.KNIGHT -> 'n';
+            case Piece.BISHOP -> 'b';
+            case Piece.ROOK -> 'r';
+            case Piece.QUEEN -> 'q';
+            default -> 'k';
+        };
+        return Piece.getPieceColor(piece) == Color.WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    // only called on the error path, so building the message may allocate
+    private static IllegalArgumentException invalid(CharSequence chars, byte[] bytes, int start, int end, String reason) {
+        String fen = chars != null
+                ? chars.subSequence(start, end).toString()
+                : new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        return new IllegalArgumentException("invalid FEN, " + reason + ": " + fen);
+    }
+}
@@ -1,35 +1,52 @@
 package chessLibOptimized;
 
+import chessLibOptimized.cache.PositionCache;
+import chessLibOptimized.tablebase.Tablebase;
+import chessLibOptimized.tablebase.TablebaseResult;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+// A game is identified by its uuid; the position has its own identity in getZobristKey().
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Game {
+    private static final int MOVE_MASK = (1 << 24) - 1;
+
+    @EqualsAndHashCode.Include
     private final UUID uuid;
     private UUID whitePlayerUuid;
     private UUID blackPlayerUuid;
 
-    private int whiteKingX;
-    private int whiteKingY;
-    private int blackKingX;
-    private int blackKingY;
-
-    private boolean isWhiteKingQueenSideCastleAvailable = true;
-    private boolean isWhiteKingKingSideCastleAvailable = true;
-    private boolean isBlackKingQueenSideCastleAvailable = true;
-    private boolean isBlackKingKingSideCastleAvailable = true;
-
+    // changed under the lock, read from the snapshot
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private long whitesTime;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private long blacksTime;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private long lastTime = 0L;
 
-    private final List<Move> movesHistory;
-
-    private int turn;
+    // Packed moves as described in Moves, with the Color.index of the side that played them in bit 24.
+    // Move objects are only built for callers, see getMovesHistory and getLastMove.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private int[] history = new int[64];
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private int historySize;
 
     // ===========CHESSBOARD============
     //   y  ^
@@ -44,93 +61,40 @@ public class Game {
     //      0       ->          7   x
     //
 
-    private final int[][] chessboard;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final Board board;
 
-    public Game() {
-        this.chessboard = new int[8][];
-        for (int i = 0; i < 8; i++) {
-            this.chessboard[i] = new int[8];
-        }
+    // loadGameFromFen parses into this board and only copies it in once the FEN is complete; made on the first load
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private Board parsed;
 
-        for (int i = 0; i < 8; i++) {
-            this.chessboard[i][1] = Piece.PAWN ^ Color.WHITE;
-            this.chessboard[i][6] = Piece.PAWN ^ Color.BLACK;
-        }
+    // Replaced, never changed, at the end of every synchronized method that changes the position or the clocks,
+    // so readers of getSnapshot need no lock.
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private volatile GameSnapshot snapshot;
 
-        // ROOKS
-        this.chessboard[0][0] = Piece.ROOK ^ Color.WHITE;
-        this.chessboard[7][0] = this.chessboard[0][0];
-        this.chessboard[0][7] = Piece.ROOK ^ Color.BLACK;
-        this.chessboard[7][7] = this.chessboard[0][7];
-        // BISHOPS
-        this.chessboard[1][0] = Piece.BISHOP ^ Color.WHITE;
-        this.chessboard[6][0] = this.chessboard[1][0];
-        this.chessboard[1][7] = Piece.BISHOP ^ Color.BLACK;
-        this.chessboard[6][7] = this.chessboard[1][7];
-        // KNIGHTS
-        this.chessboard[2][0] = Piece.KNIGHT ^ Color.WHITE;
-        this.chessboard[5][0] = this.chessboard[2][0];
-        this.chessboard[2][7] = Piece.KNIGHT ^ Color.BLACK;
-        this.chessboard[5][7] = this.chessboard[2][7];
-        // QUEENS
-        this.chessboard[3][0] = Piece.QUEEN ^ Color.WHITE;
-        this.chessboard[3][7] = Piece.QUEEN ^ Color.BLACK;
-        // KINGS
-        this.chessboard[4][0] = Piece.KING ^ Color.WHITE;
-        this.chessboard[4][7] = Piece.KING ^ Color.BLACK;
-
-        this.whiteKingX = 4;
-        this.whiteKingY = 0;
-        this.blackKingX = 4;
-        this.blackKingY = 7;
+    // optional, usually shared by many games: isMate and generateLegalMoves of the side to move go through it
+    @ToString.Exclude
+    private volatile PositionCache positionCache;
 
-        uuid = UUID.randomUUID();
+    // optional and shared like the position cache: probeTablebase reads its files
+    @ToString.Exclude
+    private volatile Tablebase tablebase;
 
-        turn = Color.WHITE;
+    public Game() {
+        this.board = new Board();
+        this.board.setUpStartingPosition();
 
-        movesHistory = new ArrayList<>();
+        uuid = UUID.randomUUID();
+        publish();
     }
 
     public Game(UUID whiteUuid) {
-        this.chessboard = new int[8][];
-        for (int i = 0; i < 8; i++) {
-            this.chessboard[i] = new int[8];
-        }
-
-        for (int i = 0; i < 8; i++) {
-            this.chessboard[i][1] = Piece.PAWN ^ Color.WHITE;
-            this.chessboard[i][6] = Piece.PAWN ^ Color.BLACK;
-        }
-
-        // ROOKS
-        this.chessboard[0][0] = Piece.ROOK ^ Color.WHITE;
-        this.chessboard[7][0] = this.chessboard[0][0];
-        this.chessboard[0][7] = Piece.ROOK ^ Color.BLACK;
-        this.chessboard[7][7] = this.chessboard[0][7];
-        // BISHOPS
-        this.chessboard[1][0] = Piece.BISHOP ^ Color.WHITE;
-        this.chessboard[6][0] = this.chessboard[1][0];
-        this.chessboard[1][7] = Piece.BISHOP ^ Color.BLACK;
-        this.chessboard[6][7] = this.chessboard[1][7];
-        // KNIGHTS
-        this.chessboard[2][0] = Piece.KNIGHT ^ Color.WHITE;
-        this.chessboard[5][0] = this.chessboard[2][0];
-        this.chessboard[2][7] = Piece.KNIGHT ^ Color.BLACK;
-        this.chessboard[5][7] = this.chessboard[2][7];
-        // QUEENS
-        this.chessboard[3][0] = Piece.QUEEN ^ Color.WHITE;
-        this.chessboard[3][7] = Piece.QUEEN ^ Color.BLACK;
-        // KINGS
-        this.chessboard[4][0] = Piece.KING ^ Color.WHITE;
-        this.chessboard[4][7] = Piece.KING ^ Color.BLACK;
-        this.whiteKingX = 4;
-        this.whiteKingY = 0;
-        this.blackKingX = 4;
-        this.blackKingY = 7;
-
-        uuid = UUID.randomUUID();
-        turn = Color.WHITE;
-        movesHistory = new ArrayList<>();
+        this();
         this.whitePlayerUuid = whiteUuid;
     }
 
@@ -138,166 +102,27 @@ public class Game {
         if (fromX >= 0 && fromX <= 7 && fromY >= 0 && fromY <= 7
                 && toX >= 0 && toX <= 7 && toY >= 0 && toY <= 7) {
 
-            if (getPieceColor(fromX, fromY) == turn) {
-
-                int piece = this.chessboard[fromX][fromY];
-                int color = getPieceColor(fromX, fromY);
-                switch (Piece.getPieceType(piece)) {
-                    case Piece.PAWN:
-                        if (color == Color.WHITE) {     // WHITE PAWN
-                            if (fromY + 2 == toY && fromY == 1 && this.chessboard[fromX][fromY + 1] == 0 && this.chessboard[fromX][fromY + 2] == 0) {       // move 2 squares
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromY + 1 == toY && fromX + 1 == toX
-                                    && this.chessboard[fromX + 1][fromY + 1] == 0) {        // en passant on right
-                                return tryEnPassantMove(fromX, fromY, toX, toY);
-                            } else if (fromY + 1 == toY && fromX - 1 == toX
-                                    && this.chessboard[fromX - 1][fromY + 1] == 0) {        // en passant on left
-                                return tryEnPassantMove(fromX, fromY, toX, toY);
-                            } else if (fromY + 1 == toY) {
-                                boolean isMoveValid;
-                                if (fromX == toX && this.chessboard[fromX][fromY + 1] == 0) {         // move 1 square
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else if (fromX + 1 == toX && getPieceColor(toX, toY) == Color.BLACK) {    // capture on right
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else if (fromX - 1 == toX && getPieceColor(toX, toY) == Color.BLACK) {    // capture on left
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else {    // wrong move
-                                    return false;
-                                }
-                                if (isMoveValid) {
-                                    if (toX == 7) {
-                                        this.chessboard[toX][toY] = promotion ^ color;
-                                    }
-                                    return true;
-                                } else {
-                                    return false;
-                                }
-                            } else {
-                                return false;
-                            }
-                        } else {    // BLACK PAWN
-                            if (fromY - 1 == 0 && toY == 0 && this.chessboard[fromX][0] == 0) {
-                                if (tryMove(fromX, fromY, toX, toY)) {
-                                    this.chessboard[fromX][0] = promotion ^ color;
-                                } else {
-                                    return false;
-                                }
-                            } else if (fromY - 2 == toY && fromY == 6 && this.chessboard[fromX][fromY - 1] == 0 && this.chessboard[fromX][fromY - 2] == 0) {       // move 2 squares
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromY - 1 == toY && fromX + 1 == toX
-                                    && this.chessboard[fromX + 1][fromY - 1] == 0) {    // en passant on right
-                                return tryEnPassantMove(fromX, fromY, toX, toY);
-                            } else if (fromY - 1 == toY && fromX - 1 == toX
-                                    && this.chessboard[fromX - 1][fromY - 1] == 0) {    // en passant on left
-                                return tryEnPassantMove(fromX, fromY, toX, toY);
-                            } else if (fromY - 1 == toY) {
-                                boolean isMoveValid;
-                                if (fromX == toX && this.chessboard[fromX][fromY - 1] == 0) {     // move 1 square
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else if (fromX + 1 == toX && getPieceColor(toX, toY) == Color.WHITE) {    // capture on rigth
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else if (fromX - 1 == toX && getPieceColor(toX, toY) == Color.WHITE) {    // capture on left
-                                    isMoveValid = tryMove(fromX, fromY, toX, toY);
-                                } else {    // wrong move
-                                    return false;
-                                }
-                                if (isMoveValid) {
-                                    if (toY == 0) {
-                                        this.chessboard[toX][toY] = promotion ^ color;
-                                    }
-                                    return true;
-                                } else {
-                                    return false;
-                                }
-                            } else {
-                                return false;
-                            }
-                        }
-                    case Piece.BISHOP:
-                        return tryBishopMove(fromX, fromY, toX, toY);
-                    case Piece.KNIGHT:
-                        if (fromX + 2 == toX) {
-                            if (fromY + 1 == toY) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromY - 1 == toY) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else {
-                                return false;
-                            }
-                        } else if (fromX - 2 == toX) {
-                            if (fromY + 1 == toY) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromY - 1 == toY) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else {
-                                return false;
-                            }
-                        } else if (fromY + 2 == toY) {
-                            if (fromX + 1 == toX) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromX - 1 == toX) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else {
-                                return false;
-                            }
-                        } else if (fromY - 2 == toY) {
-                            if (fromX + 1 == toX) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else if (fromX - 1 == toX) {
-                                return tryMove(fromX, fromY, toX, toY);
-                            } else {
-                                return false;
-                            }
-                        } else {
-                            return false;
-                        }
-                    case Piece.ROOK:
-                        boolean canMove = tryMove(fromX, fromY, toX, toY);
-                        if (canMove) {
-                            if (Piece.getPieceColor(this.chessboard[toX][toY]) == Color.WHITE) {
-                                if (fromX == 0) {
-                                    isWhiteKingQueenSideCastleAvailable = false;
-                                } else if (fromX == 7) {
-                                    isWhiteKingKingSideCastleAvailable = false;
-                                }
-                            } else {
-                                if (fromX == 0) {
-                                    isBlackKingQueenSideCastleAvailable = false;
-                                } else if (fromX == 7) {
-                                    isBlackKingKingSideCastleAvailable = false;
-                                }
-                            }
-                        }
-                        return canMove;
-                    case Piece.QUEEN:
-                        return tryBishopMove(fromX, fromY, toX, toY) || tryRookMove(fromX, fromY, toX, toY);
-                    case Piece.KING:
-                        int x = Math.abs(toX - fromX);
-                        int y = Math.abs(toY - fromY);
-                        if (fromY == toY && Math.abs(fromX - toX) == 2) {
-                            return isKingCastleAvailable(fromX, fromY, toX, toY);
-                        } else if (x < 2 && y < 2) {
-                            boolean b = tryMove(fromX, fromY, toX, toY);
-                            if (b) {
-                                if (color == Color.WHITE) {
-                                    this.whiteKingX = toX;
-                                    this.whiteKingY = toY;
-                                    isWhiteKingQueenSideCastleAvailable = false;
-                                    isWhiteKingKingSideCastleAvailable = false;
-                                } else {
-                                    this.blackKingX = toX;
-                                    this.blackKingY = toY;
-                                    isBlackKingKingSideCastleAvailable = false;
-                                    isBlackKingQueenSideCastleAvailable = false;
-                                }
-                                return true;
-                            } else {
-                                return false;
-                            }
-                        }
-                    default:
-                        return false;
-                }
+            int from = Bitboards.square(fromX, fromY);
+            int to = Bitboards.square(toX, toY);
+            int piece = board.pieceAt(from);
+            if (piece != 0 && Piece.getPieceColor(piece) == board.getSideToMove()) {
+                if (promotion == 0) {
+                    promotion = Piece.QUEEN;
+                } else if (promotion != Piece.KNIGHT && promotion != Piece.BISHOP
+                        && promotion != Piece.ROOK && promotion != Piece.QUEEN) {
+                    return false;
+                }
+                int move = board.findMove(from, to, promotion);
+                if (move == Moves.NONE) {
+                    return false;
+                }
+                if (historySize == history.length) {
+                    history = Arrays.copyOf(history, historySize * 2);
+                }
+                history[historySize++] = move | Color.index(board.getSideToMove()) << 24;
+                board.makeMove(move);
+                publish();
+                return true;
             } else {
                 return false;
             }
@@ -307,771 +132,31 @@ public class Game {
     }
 
     public synchronized boolean isCheck(int color) {
-        updateKing();
-        int kingX = color == Color.WHITE ? whiteKingX : blackKingX;
-        int kingY = color == Color.WHITE ? whiteKingY : blackKingY;
-        boolean[] arr = new boolean[8];
-        for (int i = 0; i < 8; ++i) {
-            arr[i] = true;
-        }
-
-        // ROOKS AND BISHOPS
-        for (int i = 1; i < 8; ++i) {
-            if (arr[0] && kingX + i <= 7) {
-                if (this.chessboard[kingX + i][kingY] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX + i][kingY]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX + i][kingY]) == Piece.ROOK || Piece.getPieceType(this.chessboard[kingX + i][kingY] ) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX + i][kingY] != 0) {
-                    arr[0] = false;
-                }
-            }
-            if (arr[1] && kingX - i >= 0) {
-                if (this.chessboard[kingX - i][kingY] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX - i][kingY]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX - i][kingY]) == Piece.ROOK || Piece.getPieceType(this.chessboard[kingX - i][kingY] ) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX - i][kingY] != 0) {
-                    arr[1] = false;
-                }
-            }
-            if (arr[2] && kingY + i <= 7) {
-                if (this.chessboard[kingX][kingY + i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX][kingY + i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX][kingY + i]) == Piece.ROOK || Piece.getPieceType(this.chessboard[kingX][kingY + i] ) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX][kingY + i] != 0) {
-                    arr[2] = false;
-                }
-            }
-            if (arr[3] && kingY - i >= 0) {
-                if (this.chessboard[kingX][kingY - i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX][kingY - i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX][kingY - i]) == Piece.ROOK || Piece.getPieceType(this.chessboard[kingX][kingY - i] ) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX][kingY - i] != 0) {
-                    arr[3] = false;
-                }
-            }
-            if (arr[4] && kingX + i <= 7 && kingY - i >= 0) {
-                if (this.chessboard[kingX + i][kingY - i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX + i][kingY - i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX + i][kingY - i]) == Piece.BISHOP || Piece.getPieceType(this.chessboard[kingX + i][kingY - i]) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX + i][kingY - i] != 0) {
-                    arr[4] = false;
-                }
-            }
-            if (arr[5] && kingX + i <= 7 && kingY + i <= 7) {
-                if (this.chessboard[kingX + i][kingY + i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX + i][kingY + i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX + i][kingY + i]) == Piece.BISHOP || Piece.getPieceType(this.chessboard[kingX + i][kingY + i]) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX + i][kingY + i] != 0) {
-                    arr[5] = false;
-                }
-            }
-            if (arr[6] && kingX - i >= 0 && kingY - i >= 0) {
-                if (this.chessboard[kingX - i][kingY - i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX - i][kingY - i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX - i][kingY - i]) == Piece.BISHOP || Piece.getPieceType(this.chessboard[kingX - i][kingY - i]) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX - i][kingY - i] != 0) {
-                    arr[6] = false;
-                }
-            }
-            if (arr[7] && kingX - i >= 0 && kingY + i <= 7) {
-                if (this.chessboard[kingX - i][kingY + i] != 0
-                        && Piece.getPieceColor(this.chessboard[kingX - i][kingY + i]) != color
-                        && (Piece.getPieceType(this.chessboard[kingX - i][kingY + i]) == Piece.BISHOP || Piece.getPieceType(this.chessboard[kingX - i][kingY + i]) == Piece.QUEEN)) {
-                    return true;
-                } else if (this.chessboard[kingX - i][kingY + i] != 0) {
-                    arr[7] = false;
-                }
-            }
-        }
-
-        // KNIGHTS
-        int piece;
-        if (kingX + 2 <= 7) {
-            if (kingY + 1 <= 7) {
-                piece = this.chessboard[kingX + 2][kingY + 1];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-            if (kingY - 1 >= 0) {
-                piece = this.chessboard[kingX + 2][kingY - 1];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-        }
-        if (kingX - 2 >= 0) {
-            if (kingY + 1 <= 7) {
-                piece = this.chessboard[kingX - 2][kingY + 1];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-            if (kingY - 1 >= 0) {
-                piece = this.chessboard[kingX - 2][kingY - 1];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-        }
-        if (kingY + 2 <= 7) {
-            if (kingX + 1 <= 7) {
-                piece = this.chessboard[kingX + 1][kingY + 2];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-            if (kingX - 1 >= 0) {
-                piece = this.chessboard[kingX - 1][kingY + 2];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-        }
-        if (kingY - 2 >= 0) {
-            if (kingX + 1 <= 7) {
-                piece = this.chessboard[kingX + 1][kingY - 2];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-            if (kingX - 1 >= 0) {
-                piece = this.chessboard[kingX - 1][kingY - 2];
-                if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KNIGHT) {
-                    return true;
-                }
-            }
-        }
-
-        // PAWNS
-        if (color == Color.WHITE) {
-            if (kingY + 1 <= 6) {
-                if (kingX + 1 <= 7) {
-                    piece = this.chessboard[kingX + 1][kingY + 1];
-                    if (Piece.getPieceType(piece) == Piece.PAWN && Piece.getPieceColor(piece) != color) {
-                        return true;
-                    }
-                }
-                if (kingX - 1 >= 0) {
-                    piece = this.chessboard[kingX - 1][kingY + 1];
-                    if (Piece.getPieceType(piece) == Piece.PAWN && Piece.getPieceColor(piece) != color) {
-                        return true;
-                    }
-                }
-            }
-        } else {
-            if (kingY - 1 >= 1) {
-                if (kingX + 1 <= 7) {
-                    piece = this.chessboard[kingX + 1][kingY - 1];
-                    if (Piece.getPieceType(piece) == Piece.PAWN && Piece.getPieceColor(piece) != color) {
-                        return true;
-                    }
-                }
-                if (kingX - 1 >= 0) {
-                    piece = this.chessboard[kingX - 1][kingY - 1];
-                    if (Piece.getPieceType(piece) == Piece.PAWN && Piece.getPieceColor(piece) != color) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        // KING
-        for (int i = -1; i < 2; i++) {
-            if (kingX + i >= 0 && kingX + i <= 7) {
-                if (kingY + 1 <= 7) {
-                    piece = this.chessboard[kingX + i][kingY + 1];
-                    if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KING) {
-                        return true;
-                    }
-                }
-                if (kingY - 1 >= 0) {
-                    piece = this.chessboard[kingX + i][kingY - 1];
-                    if (Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KING) {
-                        return true;
-                    }
-                }
-            }
-        }
-        if (kingX - 1 >= 0) {
-            piece = this.chessboard[kingX - 1][kingY];
-            return Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KING;
-        }
-        if (kingX + 1 < chessboard.length) {
-            piece = this.chessboard[kingX + 1][kingY];
-            return Piece.getPieceColor(piece) != color && Piece.getPieceType(piece) == Piece.KING;
-        }
-        return false;
+        return board.isCheck(color);
     }
 
     public synchronized boolean isMate(int color) {
-        updateKing();
-        int kingX = color == Color.WHITE ? whiteKingX : blackKingX;
-        int kingY = color == Color.WHITE ? whiteKingY : blackKingY;
-        for (int i = -1; i < 2; i++) {
-            if (kingX + i <= 7 && kingX + i >= 0) {
-                if (kingY + 1 <= 7) {
-                    if (this.chessboard[kingX + i][kingY + 1] == 0 || Piece.getPieceColor(this.chessboard[kingX + i][kingY + 1]) != color) {
-                        if (color == Color.WHITE) {
-                            whiteKingX = kingX + i;
-                            whiteKingY = kingY + 1;
-                        } else {
-                            blackKingX = kingX + i;
-                            blackKingY = kingY + 1;
-                        }
-                        if (tryMove(kingX, kingY, kingX + i, kingY + 1)) {
-                            undoLastMove();
-                            return false;
-                        }
-                        if (color == Color.WHITE) {
-                            whiteKingX = kingX;
-                            whiteKingY = kingY;
-                        } else {
-                            blackKingX = kingX;
-                            blackKingY = kingY;
-                        }
-                    }
-                }
-                if (kingY - 1 >= 0) {
-                    if (this.chessboard[kingX + i][kingY - 1] == 0 || Piece.getPieceColor(this.chessboard[kingX + i][kingY - 1]) != color) {
-                        if (color == Color.WHITE) {
-                            whiteKingX = kingX + i;
-                            whiteKingY = kingY - 1;
-                        } else {
-                            blackKingX = kingX + i;
-                            blackKingY = kingY - 1;
-                        }
-                        if (tryMove(kingX, kingY, kingX + i, kingY - 1)) {
-                            undoLastMove();
-                            return false;
-                        }
-                        if (color == Color.WHITE) {
-                            whiteKingX = kingX;
-                            whiteKingY = kingY;
-                        } else {
-                            blackKingX = kingX;
-                            blackKingY = kingY;
-                        }
-                    }
-                }
-            }
-        }
-        if (kingX - 1 >= 0 && Piece.getPieceColor(this.chessboard[kingX - 1][kingY]) != color) {
-            if (color == Color.WHITE) {
-                whiteKingX = kingX - 1;
-            } else {
-                blackKingX = kingX - 1;
-            }
-            if (tryMove(kingX, kingY, kingX - 1, kingY)) {
-                undoLastMove();
-                return false;
-            }
-            if (color == Color.WHITE) {
-                whiteKingX = kingX;
-            } else {
-                blackKingX = kingX;
-            }
+        if (positionCache != null && color == board.getSideToMove()) {
+            return positionCache.lookup(board).isMate();
         }
-        if (kingX + 1 <= 7 && Piece.getPieceColor(this.chessboard[kingX + 1][kingY]) != color) {
-            if (color == Color.WHITE) {
-                whiteKingX = kingX + 1;
-            } else {
-                blackKingX = kingX + 1;
-            }
-            if (tryMove(kingX, kingY, kingX + 1, kingY)) {
-                undoLastMove();
-                return false;
-            }
-            if (color == Color.WHITE) {
-                whiteKingX = kingX;
-            } else {
-                blackKingX = kingX;
-            }
-        }
-        for (int x = 0; x < chessboard.length; x++) {
-            for (int y = 0; y < chessboard[x].length; y++) {
-                int piece = this.chessboard[x][y];
-                if (Piece.getPieceColor(piece) == color) {
-                    int i;
-                    switch (Piece.getPieceType(piece)) {
-                        case Piece.PAWN -> {
-                            if (Piece.getPieceColor(piece) == Color.WHITE) {
-                                if (y + 1 <= 7) {
-                                    if (this.chessboard[x][y + 1] == 0) {   // move 1 square
-                                        if (tryMove(x, y, x, y + 1)) {
-                                            undoLastMove();
-                                            return false;
-                                        }
-                                        if (y == 1 && this.chessboard[x][y + 2] == 0) { // move 2 squares
-                                            if (tryMove(x, y, x, y + 2)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-
-                                    if (x + 1 <= 7) {
-                                        if (this.chessboard[x + 1][y + 1] == 0 && canEnPassant(x, y)) {   // en passant on right
-                                            if (tryEnPassantMove(x, y, x + 1, y + 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                        if (Piece.getPieceColor(this.chessboard[x + 1][y + 1]) == Color.BLACK) {    // capture on right
-                                            if (tryMove(x, y, x + 1, y + 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-                                    if (x - 1 >= 0) {
-                                        if (this.chessboard[x - 1][y + 1] == 0 && canEnPassant(x, y)) {   // en passant on left
-                                            if (tryEnPassantMove(x, y, x - 1, y + 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                        if (Piece.getPieceColor(this.chessboard[x - 1][y + 1]) == Color.BLACK) {    // capture on left
-                                            if (tryMove(x, y, x - 1, y + 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-                                }
-                            } else {
-                                if (y - 1 >= 0) {
-                                    if (this.chessboard[x][y - 1] == 0) {   // move 1 square
-                                        if (tryMove(x, y, x, y - 1)) {
-                                            undoLastMove();
-                                            return false;
-                                        }
-                                        if (y == 6 && this.chessboard[x][y - 2] == 0) { // move 2 squares
-                                            if (tryMove(x, y, x, y - 2)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-
-                                    if (x + 1 <= 7) {
-                                        if (this.chessboard[x + 1][y - 1] == 0 && canEnPassant(x, y)) {   // en passant on right
-                                            if (tryEnPassantMove(x, y, x + 1, y - 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                        if (Piece.getPieceColor(this.chessboard[x + 1][y - 1]) == Color.BLACK) {    // capture on right
-                                            if (tryMove(x, y, x + 1, y - 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-                                    if (x - 1 >= 0) {
-                                        if (this.chessboard[x - 1][y - 1] == 0 && canEnPassant(x, y)) {   // en passant on left
-                                            if (tryEnPassantMove(x, y, x - 1, y - 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                        if (Piece.getPieceColor(this.chessboard[x - 1][y - 1]) == Color.BLACK) {    // capture on left
-                                            if (tryMove(x, y, x - 1, y - 1)) {
-                                                undoLastMove();
-                                                return false;
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        case Piece.KNIGHT -> {
-                            if (x + 2 <= 7) {
-                                if (y + 1 <= 7 && Piece.getPieceColor(this.chessboard[x + 2][y + 1]) != color) {
-                                    if (tryMove(x, y, x + 2, y + 1)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                                if (y - 1 >= 0 && Piece.getPieceColor(this.chessboard[x + 2][y - 1]) != color) {
-                                    if (tryMove(x, y, x + 2, y - 1)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                            }
-                            if (x - 2 >= 0) {
-                                if (y + 1 <= 7 && Piece.getPieceColor(this.chessboard[x - 2][y + 1]) != color) {
-                                    if (tryMove(x, y, x - 2, y + 1)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                                if (y - 1 >= 0 && Piece.getPieceColor(this.chessboard[x - 2][y - 1]) != color) {
-                                    if (tryMove(x, y, x - 2, y - 1)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                            }
-                            if (y + 2 <= 7) {
-                                if (x + 1 <= 7 && Piece.getPieceColor(this.chessboard[x + 1][y + 2]) != color) {
-                                    if (tryMove(x, y, x + 1, y + 2)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                                if (x - 1 >= 0 && Piece.getPieceColor(this.chessboard[x - 1][y + 2]) != color) {
-                                    if (tryMove(x, y, x - 1, y + 2)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                            }
-                            if (y - 2 >= 0) {
-                                if (x + 1 <= 7 && Piece.getPieceColor(this.chessboard[x + 1][y - 2]) != color) {
-                                    if (tryMove(x, y, x + 1, y - 2)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                                if (x - 1 >= 0 && Piece.getPieceColor(this.chessboard[x - 1][y - 2]) != color) {
-                                    if (tryMove(x, y, x - 1, y - 2)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                }
-                            }
-                        }
-                        case Piece.BISHOP -> {
-                            i = 1;
-                            while (x + i <= 7 && y + i <= 7) {
-                                if (this.chessboard[x + i][y + i] == 0) {
-                                    if (tryMove(x, y, x + i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y + i]) != color) {
-                                    if (tryMove(x, y, x + i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0 && y + i <= 7) {
-                                if (this.chessboard[x - i][y + i] == 0) {
-                                    if (tryMove(x, y, x - i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y + i]) != color) {
-                                    if (tryMove(x, y, x - i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x + i <= 7 && y - i >= 0) {
-                                if (this.chessboard[x + i][y - i] == 0) {
-                                    if (tryMove(x, y, x + i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y - i]) != color) {
-                                    if (tryMove(x, y, x + i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0 && y - i >= 0) {
-                                if (this.chessboard[x - i][y - i] == 0) {
-                                    if (tryMove(x, y, x - i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y - i]) != color) {
-                                    if (tryMove(x, y, x - i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                        }
-                        case Piece.ROOK -> {
-                            i = 1;
-                            while (x + i <= 7) {
-                                if (this.chessboard[x + i][y] == 0) {
-                                    if (tryMove(x, y, x + i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y]) != color) {
-                                    if (tryMove(x, y, x + i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0) {
-                                if (this.chessboard[x - i][y] == 0) {
-                                    if (tryMove(x, y, x - i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y]) != color) {
-                                    if (tryMove(x, y, x - i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (y - i >= 0) {
-                                if (this.chessboard[x][y - i] == 0) {
-                                    if (tryMove(x, y, x, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x][y - i]) != color) {
-                                    if (tryMove(x, y, x, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (y + i <= 7) {
-                                if (this.chessboard[x][y + i] == 0) {
-                                    if (tryMove(x, y, x, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x][y + i]) != color) {
-                                    if (tryMove(x, y, x, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                        }
-                        case Piece.QUEEN -> {
-                            i = 1;
-                            while (x + i <= 7) {
-                                if (this.chessboard[x + i][y] == 0) {
-                                    if (tryMove(x, y, x + i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y]) != color) {
-                                    if (tryMove(x, y, x + i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0) {
-                                if (this.chessboard[x - i][y] == 0) {
-                                    if (tryMove(x, y, x - i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y]) != color) {
-                                    if (tryMove(x, y, x - i, y)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (y - i >= 0) {
-                                if (this.chessboard[x][y - i] == 0) {
-                                    if (tryMove(x, y, x, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x][y - i]) != color) {
-                                    if (tryMove(x, y, x, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (y + i <= 7) {
-                                if (this.chessboard[x][y + i] == 0) {
-                                    if (tryMove(x, y, x, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x][y + i]) != color) {
-                                    if (tryMove(x, y, x, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x + i <= 7 && y + i <= 7) {
-                                if (this.chessboard[x + i][y + i] == 0) {
-                                    if (tryMove(x, y, x + i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y + i]) != color) {
-                                    if (tryMove(x, y, x + i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0 && y + i <= 7) {
-                                if (this.chessboard[x - i][y + i] == 0) {
-                                    if (tryMove(x, y, x - i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y + i]) != color) {
-                                    if (tryMove(x, y, x - i, y + i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x + i <= 7 && y - i >= 0) {
-                                if (this.chessboard[x + i][y - i] == 0) {
-                                    if (tryMove(x, y, x + i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x + i][y - i]) != color) {
-                                    if (tryMove(x, y, x + i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                            i = 1;
-                            while (x - i >= 0 && y - i >= 0) {
-                                if (this.chessboard[x - i][y - i] == 0) {
-                                    if (tryMove(x, y, x - i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                } else if (Piece.getPieceColor(this.chessboard[x - i][y - i]) != color) {
-                                    if (tryMove(x, y, x - i, y - i)) {
-                                        undoLastMove();
-                                        return false;
-                                    }
-                                    break;
-                                } else {
-                                    break;
-                                }
-                                ++i;
-                            }
-                        }
-                        case Piece.KING -> {}
-                    }
-                }
-            }
+        return board.isCheck(color) && !board.hasLegalMove(color);
+    }
+
+    // Fills buffer with the legal moves of the side to move, packed as described in Moves, and returns their number.
+    // A buffer of Moves.MAX_MOVES entries is always large enough.
+    public synchronized int generateLegalMoves(int[] buffer) {
+        if (positionCache != null) {
+            return positionCache.lookup(board).copyMoves(buffer);
         }
-        return true;
+        return board.generateLegalMoves(buffer, 0);
     }
 
+    // exact inverse of move: the board keeps the irreversible state of every move on its undo stack
     public synchronized void undoLastMove() {
-        Move lastMove = getLastMove();
-        if (lastMove != Move.BAD_MOVE) {
-            movesHistory.remove(movesHistory.size() - 1);
-            this.chessboard[lastMove.getFromX()][lastMove.getFromY()] = lastMove.getFromPiece();
-            if (Piece.getPieceType(lastMove.getFromPiece()) == Piece.PAWN
-                    && Math.abs(lastMove.getFromX() - lastMove.getToX()) == 1 && lastMove.getToPiece() == 0) {  // en passant
-                this.chessboard[lastMove.getToX()][lastMove.getFromY()] = Piece.PAWN ^ (Piece.getPieceColor(lastMove.getFromPiece()) == Color.WHITE ? Color.BLACK : Color.WHITE);
-                return;
-            }
-            if (lastMove.getFromX() == 4) {    // king castle
-                if (lastMove.getToX() == 6) {
-                    this.chessboard[lastMove.getFromX()][lastMove.getFromY()] = lastMove.getFromPiece();
-                    this.chessboard[7][lastMove.getToY()] = Piece.ROOK ^ Piece.getPieceColor(lastMove.getFromPiece());
-                } else if (lastMove.getToX() == 2) {
-                    this.chessboard[lastMove.getFromX()][lastMove.getFromY()] = lastMove.getFromPiece();
-                    this.chessboard[0][lastMove.getToY()] = Piece.ROOK ^ Piece.getPieceColor(lastMove.getFromPiece());
-                }
-            }
-            this.chessboard[lastMove.getToX()][lastMove.getToY()] = lastMove.getToPiece();
+        if (historySize > 0) {
+            int move = history[--historySize] & MOVE_MASK;
+            board.unmakeMove(move);
+            publish();
         }
     }
 
@@ -1079,280 +164,242 @@ public class Game {
         if (lastTime == 0L) {
             lastTime = time;
         }
-        if (turn == Color.BLACK) {
+        if (board.getSideToMove() == Color.BLACK) {
             whitesTime -= time - lastTime;
         } else {
             blacksTime -= time - lastTime;
         }
         lastTime = time;
+        publish();
     }
 
-    public Move getLastMove() {
-        if (movesHistory.size() == 0) {
-            return Move.BAD_MOVE;
-        } else {
-            return movesHistory.get(movesHistory.size() - 1);
-        }
+    public long getWhitesTime() {
+        return snapshot.getWhitesTime();
     }
 
-    public void loadGameFromFen(String fen) {
-        String[] options = fen.split(" ");
-        String[] lines = options[0].split("/");
-
-        for (int i = 0; i < 8; i++) {
-            int counter = 0;
-            for (int j = 0; j < lines[i].length(); j++) {
-                if (Character.isDigit(lines[i].charAt(j))) {
-                    for (int k = 0; k < Character.getNumericValue(lines[i].charAt(j)); k++) {
-                        this.chessboard[counter][7 - i] = 0;
-                        ++counter;
-                    }
-                } else {
-                    switch (lines[i].charAt(j)) {
-                        case 'p' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.PAWN;
-                        case 'r' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.ROOK;
-                        case 'b' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.BISHOP;
-                        case 'n' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.KNIGHT;
-                        case 'q' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.QUEEN;
-                        case 'k' -> chessboard[counter][7 - i] = Color.BLACK ^ Piece.KING;
-                        case 'P' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.PAWN;
-                        case 'R' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.ROOK;
-                        case 'B' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.BISHOP;
-                        case 'N' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.KNIGHT;
-                        case 'Q' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.QUEEN;
-                        case 'K' -> chessboard[counter][7 - i] = Color.WHITE ^ Piece.KING;
-                    }
-                    ++counter;
-                }
-            }
-        }
-        if (options[1].equals("w")) {
-            turn = Color.WHITE;
-        } else {
-            turn = Color.BLACK;
-        }
+    public long getBlacksTime() {
+        return snapshot.getBlacksTime();
     }
 
-    private int getPieceColor(int x, int y) {
-        if (this.chessboard[x][y] == 0) {
-            return 0;
-        } else {
-            return this.chessboard[x][y] & 192;
-        }
+    public synchronized long getLastTime() {
+        return lastTime;
     }
 
-    private boolean canEnPassant(int fromX, int fromY) {
-        Move lastMove = getLastMove();
-        if (lastMove != Move.BAD_MOVE) {
-            if (getPieceColor(fromX, fromY) == Color.WHITE) {
-                return Piece.getPieceType(lastMove.getFromPiece()) == Piece.PAWN
-                        && lastMove.getFromY() == 6 && lastMove.getToY() == 4;
-            } else {
-                return Piece.getPieceType(lastMove.getFromPiece()) == Piece.PAWN
-                        && lastMove.getFromY() == 1 && lastMove.getToY() == 3;
-            }
-        } else {
-            return false;
+    public synchronized void setLastTime(long lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    public synchronized void setWhitesTime(long whitesTime) {
+        this.whitesTime = whitesTime;
+        publish();
+    }
+
+    public synchronized void setBlacksTime(long blacksTime) {
+        this.blacksTime = blacksTime;
+        publish();
+    }
+
+    // a fresh copy indexed [x][y], taken from the current snapshot without locking
+    public int[][] getChessboard() {
+        return snapshot.toChessboard();
+    }
+
+    public int getMoveCount() {
+        return snapshot.getMoveCount();
+    }
+
+    // the index-th move of the game, packed as described in Moves
+    public synchronized int getMove(int index) {
+        if (index < 0 || index >= historySize) {
+            throw new IndexOutOfBoundsException("move " + index + " of " + historySize);
         }
+        return history[index] & MOVE_MASK;
     }
 
-    private void updateKing() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (Piece.getPieceType(this.chessboard[i][j]) == Piece.KING) {
-                    if (Piece.getPieceColor(this.chessboard[i][j]) == Color.WHITE) {
-                        whiteKingX = i;
-                        whiteKingY = j;
-                    } else {
-                        blackKingX = i;
-                        blackKingY = j;
-                    }
-                }
-            }
+    // a fresh list on every call, for callers and persistence that still work with Move
+    public synchronized List<Move> getMovesHistory() {
+        List<Move> moves = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            moves.add(toMove(history[i]));
         }
+        return moves;
     }
 
-    private boolean tryMove(int fromX, int fromY, int toX, int toY) {
-        int pieceCopy = this.chessboard[toX][toY];
-        this.chessboard[toX][toY] = this.chessboard[fromX][fromY];
-        this.chessboard[fromX][fromY] = 0;
-        if (isCheck(getPieceColor(toX, toY))) {
-            this.chessboard[fromX][fromY] = this.chessboard[toX][toY];
-            this.chessboard[toX][toY] = pieceCopy;
-            return false;
-        } else {
-            Move move = new Move(fromX, fromY, toX, toY, this.chessboard[toX][toY], pieceCopy);
-            movesHistory.add(move);
-            turn = Color.WHITE == turn ? Color.BLACK : Color.WHITE;
-            return true;
+    public synchronized Move getLastMove() {
+        return historySize == 0 ? Move.BAD_MOVE : toMove(history[historySize - 1]);
+    }
+
+    // Replaces the position, history included. Throws IllegalArgumentException for malformed input, which leaves the
+    // game as it was: the FEN is parsed into a board of its own and only copied in once it is complete.
+    public synchronized void loadGameFromFen(CharSequence fen) {
+        Fen.parse(fen, parsingBoard());
+        load();
+    }
+
+    // ASCII FEN in fen[offset, offset + length)
+    public synchronized void loadGameFromFen(byte[] fen, int offset, int length) {
+        Fen.parse(fen, offset, length, parsingBoard());
+        load();
+    }
+
+    private Board parsingBoard() {
+        if (parsed == null) {
+            parsed = new Board();
         }
+        return parsed;
     }
 
-    private boolean tryBishopMove(int fromX, int fromY, int toX, int toY) {
-        int i = 1;
-        int color = getPieceColor(fromX, fromY);
-        if (fromX > toX) {
-            if (fromX - toX == fromY - toY) {
-                while (i <= 7 && fromX - i != toX && fromY - i != toY && fromX - i >= 0 && fromY - i >= 0 && this.chessboard[fromX - i][fromY - i] == 0) {   // move left down
-                    ++i;
-                }
-                if (fromX - i == toX && fromY - i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            } else if (fromX - toX == toY - fromY) {
-                while (i <= 7 && fromX - i != toX && fromY + i != toY && fromX - i >= 0 && fromY + i <= 7 && this.chessboard[fromX - i][fromY + i] == 0) {   // move left up
-                    ++i;
-                }
-                if (fromX - i == toX && fromY + i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            }
-        } else if (fromX < toX) {
-            if (toX - fromX == toY - fromY) {
-                while (i <= 7 && fromX + i != toX && fromY + i != toY && fromX + i <= 7 && fromY + i <= 7 && this.chessboard[fromX + i][fromY + i] == 0) {   // move right up
-                    ++i;
-                }
-                if (fromX + i == toX && fromY + i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            } else if (toX - fromX == fromY - toY) {
-                while (i <= 7 && fromX + i != toX && fromY - i != toY && fromX + i <= 7 && fromY - i >= 0 && this.chessboard[fromX + i][fromY - i] == 0) {   // move right down
-                    ++i;
-                }
-                if (fromX + i == toX && fromY - i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
+    private void load() {
+        board.copyFrom(parsed);
+        historySize = 0;
+        publish();
+    }
+
+    public synchronized void toFen(StringBuilder sb) {
+        Fen.toFen(board, sb);
+    }
+
+    // writes at most Fen.MAX_LENGTH bytes and returns how many were written
+    public synchronized int toFen(byte[] out, int offset) {
+        return Fen.toFen(board, out, offset);
+    }
+
+    public synchronized String getFen() {
+        return Fen.toFen(board);
+    }
+
+    // Copies the current position into target, so analysis can run on it. Both forks come from the published
+    // snapshot and never take the game lock.
+    public void copyBoardInto(Board target) {
+        snapshot.copyInto(target);
+    }
+
+    public void copyPositionInto(Position target) {
+        snapshot.copyInto(target);
+    }
+
+    // Copies the position before the first move of the history into target and returns the moves played from it,
+    // packed as described in Moves. Board and moves are taken together under the lock; the moves are then taken
+    // back on target, so the live board is only read.
+    public int[] copyStartingBoardInto(Board target) {
+        int[] moves;
+        synchronized (this) {
+            target.copyWithUndoFrom(board);
+            moves = new int[historySize];
+            for (int i = 0; i < historySize; i++) {
+                moves[i] = history[i] & MOVE_MASK;
             }
-        } else {
-            return false;
         }
-        return false;
+        for (int i = moves.length - 1; i >= 0; i--) {
+            target.unmakeMove(moves[i]);
+        }
+        return moves;
     }
 
-    private boolean tryRookMove(int fromX, int fromY, int toX, int toY) {
-        int i = 1;
-        int color = getPieceColor(fromX, fromY);
-        if (fromX == toX) {
-            if (fromY > toY) {  // move down
-                while (i <= 7 && fromY - i != toY && this.chessboard[fromX][fromY - i] == 0) {
-                    ++i;
-                }
-                if (fromY - i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            } else {            // move up
-                while (i <= 7 && fromY + i != toY && this.chessboard[fromX][fromY + i] == 0) {
-                    ++i;
-                }
-                if (fromY + i == toY && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            }
+    // static evaluation in centipawns from the side to move's point of view, O(1) as the board keeps its terms
+    public synchronized int evaluate() {
+        return Evaluation.evaluate(board);
+    }
 
-        } else if (fromY == toY) {
-            if (fromX > toX) {  // move left
-                while (i <= 7 && fromX - i != toX && this.chessboard[fromX - 1][fromY] == 0) {
-                    ++i;
-                }
-                if (fromX - i == toX && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            } else {            // move right
-                while (i <= 7 && fromX + i != toX && this.chessboard[fromX + 1][fromY] == 0) {
-                    ++i;
-                }
-                if (fromX + i == toX && (this.chessboard[toX][toY] == 0 || getPieceColor(toX, toY) != color)) {
-                    return tryMove(fromX, fromY, toX, toY);
-                }
-            }
+    // Exact result and best move from the endgame tablebase, or null without one or when the position has too many
+    // pieces or castling rights left. Probes the published snapshot, so it takes no lock.
+    public TablebaseResult probeTablebase() {
+        Tablebase tablebase = this.tablebase;
+        return tablebase == null ? null : tablebase.probe(snapshot);
+    }
 
-        } else {
-            return false;
-        }
-        return false;
+    // 64-bit Zobrist key of the current position, updated incrementally by every move, undo and FEN load
+    public synchronized long getZobristKey() {
+        return board.hash();
     }
 
-    private boolean tryEnPassantMove(int fromX, int fromY, int toX, int toY) {
-        int piece = this.chessboard[fromX][fromY];
-        int pieceCopy = this.chessboard[toX][fromY];
+    // The getters of the turn, the kings and the castling rights read the published snapshot, so they take no lock
+    // and never see a move half made. King squares are tracked by the board, so publishing them never scans.
+    public int getWhiteKingX() {
+        return snapshot.getWhiteKingSquare() & 7;
+    }
 
-        this.chessboard[toX][toY] = piece;
-        this.chessboard[fromX][fromY] = 0;
-        this.chessboard[toX][fromY] = 0;
-        if (isCheck(Piece.getPieceColor(piece))) {
-            this.chessboard[fromX][fromY] = piece;
-            this.chessboard[toX][fromY] = pieceCopy;
-            return false;
+    public int getWhiteKingY() {
+        return snapshot.getWhiteKingSquare() >>> 3;
+    }
+
+    public int getBlackKingX() {
+        return snapshot.getBlackKingSquare() & 7;
+    }
+
+    public int getBlackKingY() {
+        return snapshot.getBlackKingSquare() >>> 3;
+    }
+
+    public int getTurn() {
+        return snapshot.getTurn();
+    }
+
+    public synchronized void setTurn(int turn) {
+        board.setSideToMove(turn);
+        publish();
+    }
+
+    public boolean isWhiteKingQueenSideCastleAvailable() {
+        return (snapshot.getCastlingRights() & Board.WHITE_QUEEN_SIDE) != 0;
+    }
+
+    public void setWhiteKingQueenSideCastleAvailable(boolean available) {
+        setCastlingRight(Board.WHITE_QUEEN_SIDE, available);
+    }
+
+    public boolean isWhiteKingKingSideCastleAvailable() {
+        return (snapshot.getCastlingRights() & Board.WHITE_KING_SIDE) != 0;
+    }
+
+    public void setWhiteKingKingSideCastleAvailable(boolean available) {
+        setCastlingRight(Board.WHITE_KING_SIDE, available);
+    }
+
+    public boolean isBlackKingQueenSideCastleAvailable() {
+        return (snapshot.getCastlingRights() & Board.BLACK_QUEEN_SIDE) != 0;
+    }
+
+    public void setBlackKingQueenSideCastleAvailable(boolean available) {
+        setCastlingRight(Board.BLACK_QUEEN_SIDE, available);
+    }
+
+    public boolean isBlackKingKingSideCastleAvailable() {
+        return (snapshot.getCastlingRights() & Board.BLACK_KING_SIDE) != 0;
+    }
+
+    public void setBlackKingKingSideCastleAvailable(boolean available) {
+        setCastlingRight(Board.BLACK_KING_SIDE, available);
+    }
+
+    private synchronized void setCastlingRight(int right, boolean available) {
+        if (available) {
+            board.setCastlingRights(board.getCastlingRights() | right);
         } else {
-            Move move = new Move(fromX, fromY, toX, toY, piece, 0);
-            movesHistory.add(move);
-            turn = Color.WHITE == turn ? Color.BLACK : Color.WHITE;
-            return true;
+            board.setCastlingRights(board.getCastlingRights() & ~right);
         }
+        publish();
     }
 
-    private boolean isKingCastleAvailable(int fromX, int fromY, int toX, int toY) {
-        if (Piece.getPieceColor(this.chessboard[fromX][fromY]) == Color.WHITE) {    // white king
-            if (fromX < toX && isWhiteKingKingSideCastleAvailable) {
-                if (this.chessboard[fromX + 1][fromY] == 0 && this.chessboard[fromX + 2][fromY] == 0) {
-                    if (tryMove(fromX, fromY, fromX + 1, toY)) {
-                        if (tryMove(fromX + 1, fromY, fromX + 2, toY)) {
-                            this.chessboard[5][0] = this.chessboard[7][0];
-                            this.chessboard[7][0] = 0;
-                            isWhiteKingKingSideCastleAvailable = false;
-                            isWhiteKingQueenSideCastleAvailable = false;
-                            return true;
-                        }
-                        this.chessboard[fromX][fromY] = this.chessboard[fromX + 1][fromY];
-                        this.chessboard[fromX + 1][fromY] = 0;
-                    }
-                }
-            } else if (fromX > toX && isWhiteKingQueenSideCastleAvailable) {
-                if (this.chessboard[fromX - 1][fromY] == 0 && this.chessboard[fromX - 2][fromY] == 0) {
-                    if (tryMove(fromX, fromY, fromX - 1, toY)) {
-                        if (tryMove(fromX - 1, fromY, fromX - 2, toY)) {
-                            this.chessboard[2][0] = this.chessboard[0][0];
-                            this.chessboard[0][0] = 0;
-                            isWhiteKingKingSideCastleAvailable = false;
-                            isWhiteKingQueenSideCastleAvailable = false;
-                            return true;
-                        }
-                        this.chessboard[fromX][fromY] = this.chessboard[fromX - 1][fromY];
-                        this.chessboard[fromX - 1][fromY] = 0;
-                    }
-                }
-            }
-        } else {                                                                    // black king
-            if (fromX < toX && isBlackKingKingSideCastleAvailable) {
-                if (this.chessboard[fromX + 1][fromY] == 0 && this.chessboard[fromX + 2][fromY] == 0) {
-                    if (tryMove(fromX, fromY, fromX + 1, toY)) {
-                        if (tryMove(fromX + 1, fromY, fromX + 2, toY)) {
-                            this.chessboard[5][7] = this.chessboard[7][7];
-                            this.chessboard[7][7] = 0;
-                            isBlackKingQueenSideCastleAvailable = false;
-                            isBlackKingKingSideCastleAvailable = false;
-                            return true;
-                        }
-                        this.chessboard[fromX][fromY] = this.chessboard[fromX + 1][fromY];
-                        this.chessboard[fromX + 1][fromY] = 0;
-                    }
-                }
-            } else if (fromX > toX && isBlackKingQueenSideCastleAvailable) {
-                if (this.chessboard[fromX - 1][fromY] == 0 && this.chessboard[fromX - 2][fromY] == 0) {
-                    if (tryMove(fromX, fromY, fromX - 1, toY)) {
-                        if (tryMove(fromX - 1, fromY, fromX - 2, toY)) {
-                            this.chessboard[2][7] = this.chessboard[0][7];
-                            this.chessboard[0][7] = 0;
-                            isBlackKingQueenSideCastleAvailable = false;
-                            isBlackKingKingSideCastleAvailable = false;
-                            return true;
-                        }
-                        this.chessboard[fromX][fromY] = this.chessboard[fromX - 1][fromY];
-                        this.chessboard[fromX - 1][fromY] = 0;
-                    }
-                }
-            }
-        }
-        return false;
+    private static int colorOf(int entry) {
+        return Color.WHITE << ((entry >>> 24) & 1);
+    }
+
+    // Move keeps the board contents of both squares before the move: the piece that moved, before any
+    // promotion, and whatever stood on the target square, so nothing for en passant
+    private static Move toMove(int entry) {
+        int color = colorOf(entry);
+        int from = Moves.from(entry);
+        int to = Moves.to(entry);
+        int toPiece = 0;
+        if (Moves.isCapture(entry) && (Moves.flags(entry) & Moves.EN_PASSANT) == 0) {
+            toPiece = Moves.captured(entry) ^ Color.opposite(color);
+        }
+        return new Move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.piece(entry) ^ color, toPiece);
+    }
+
+    private void publish() {
+        int lastMove = historySize == 0 ? Moves.NONE : history[historySize - 1] & MOVE_MASK;
+        snapshot = GameSnapshot.of(board, whitesTime, blacksTime, historySize, lastMove);
     }
 }
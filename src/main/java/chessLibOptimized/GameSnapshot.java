@@ -0,0 +1,68 @@
+package chessLibOptimized;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+// Immutable view of a game after one committed change, published by Game through a volatile field. Any number of
+// threads can read it without taking the game lock; a newer position is a new snapshot.
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class GameSnapshot {
+    // never changed after the snapshot is built, so it is only ever copied out
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    Position position;
+    int turn;
+    int castlingRights;
+    int enPassantSquare;
+    int halfmoveClock;
+    int fullmoveNumber;
+    int whiteKingSquare;
+    int blackKingSquare;
+    boolean check;
+    long whitesTime;
+    long blacksTime;
+    int moveCount;
+    // packed as described in Moves, Moves.NONE before the first move
+    int lastMove;
+    long zobristKey;
+    // Evaluation score from white's point of view
+    int evaluation;
+
+    static GameSnapshot of(Board board, long whitesTime, long blacksTime, int moveCount, int lastMove) {
+        Position position = new Position();
+        position.copyFrom(board);
+        int turn = board.getSideToMove();
+        return new GameSnapshot(position, turn, board.getCastlingRights(), board.getEnPassantSquare(),
+                board.getHalfmoveClock(), board.getFullmoveNumber(), board.kingSquare(Color.WHITE),
+                board.kingSquare(Color.BLACK), board.isCheck(turn),
+                whitesTime, blacksTime, moveCount, lastMove, board.hash(),
+                turn == Color.WHITE ? Evaluation.evaluate(board) : -Evaluation.evaluate(board));
+    }
+
+    public int pieceAt(int x, int y) {
+        return position.pieceAt(Bitboards.square(x, y));
+    }
+
+    public void copyInto(Position target) {
+        target.copyFrom(position);
+    }
+
+    public void copyInto(Board target) {
+        target.copyFrom(position);
+    }
+
+    // a fresh array indexed [x][y] like Game's chessboard
+    public int[][] toChessboard() {
+        int[][] chessboard = new int[8][8];
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                chessboard[x][y] = pieceAt(x, y);
+            }
+        }
+        return chessboard;
+    }
+}
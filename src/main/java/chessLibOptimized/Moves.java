@@ -0,0 +1,84 @@
+package chessLibOptimized;
+
+// Packed int moves, laid out as
+//   bits  0-5   from square
+//   bits  6-11  to square
+//   bits 12-14  promotion type index, 0 when the move is not a promotion
+//   bits 15-17  flags
+//   bits 18-20  captured type index + 1, 0 when nothing is captured
+//   bits 21-23  moving type index
+// Squares and type indexes are the ones used by Bitboards and Piece.typeIndex.
+public class Moves {
+    public static final int NONE = 0;
+
+    // no position has more legal moves than this, so it is a safe buffer size for generateLegalMoves
+    public static final int MAX_MOVES = 256;
+
+    public static final int DOUBLE_PUSH = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 4;
+
+    public static int encode(int from, int to, int piece, int captured, int promotion, int flags) {
+        return from
+                | to << 6
+                | (promotion == 0 ? 0 : Piece.typeIndex(promotion)) << 12
+                | flags << 15
+                | (captured == 0 ? 0 : Piece.typeIndex(captured) + 1) << 18
+                | Piece.typeIndex(piece) << 21;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    // promotion piece type, 0 for ordinary moves
+    public static int promotion(int move) {
+        int index = (move >>> 12) & 7;
+        return index == 0 ? 0 : 1 << index;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 15) & 7;
+    }
+
+    // captured piece type, 0 for quiet moves
+    public static int captured(int move) {
+        int index = (move >>> 18) & 7;
+        return index == 0 ? 0 : 1 << (index - 1);
+    }
+
+    // moving piece type
+    public static int piece(int move) {
+        return 1 << ((move >>> 21) & 7);
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & (7 << 18)) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (7 << 12)) != 0;
+    }
+
+    // long algebraic notation as used by UCI, e.g. e2e4 or e7e8q
+    public static String toUci(int move) {
+        StringBuilder sb = new StringBuilder(5);
+        appendSquare(sb, from(move));
+        appendSquare(sb, to(move));
+        switch (promotion(move)) {
+            case Piece.QUEEN -> sb.append('q');
+            case Piece.ROOK -> sb.append('r');
+            case Piece.BISHOP -> sb.append('b');
+            case Piece.KNIGHT -> sb.append('n');
+        }
+        return sb.toString();
+    }
+
+    private static void appendSquare(StringBuilder sb, int sq) {
+        sb.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >>> 3)));
+    }
+}
@@ -18,4 +18,14 @@ public class Piece {
     public static int getPieceColor(int piece) {
         return piece & COLOR_MASK;
     }
+
+    // 0..5 in the order PAWN, BISHOP, KNIGHT, ROOK, QUEEN, KING
+    public static int typeIndex(int type) {
+        return Integer.numberOfTrailingZeros(type);
+    }
+
+    // 0..11, white pieces first
+    public static int index(int piece) {
+        return Color.index(getPieceColor(piece)) * 6 + typeIndex(getPieceType(piece));
+    }
 }
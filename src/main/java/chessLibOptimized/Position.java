@@ -0,0 +1,117 @@
+package chessLibOptimized;
+
+import lombok.EqualsAndHashCode;
+
+// A whole position in seven longs, for forking the position of a live game into analysis and search threads.
+// The board is the occupancy, the white pieces and three planes holding the bits of every piece's Piece.typeIndex;
+// the rest of the state packs side to move, castling rights, en passant square + 1, halfmove clock and fullmove
+// number, and the Zobrist key is kept so a copy never recomputes it.
+//
+// Copying in and out never allocates, so one Position per thread can be reused for every fork.
+@EqualsAndHashCode
+public final class Position {
+    // P 000, B 001, N 010, R 011, Q 100, K 101
+    private long occupied;
+    private long white;
+    private long plane0;
+    private long plane1;
+    private long plane2;
+    // side to move index | castling rights << 1 | en passant square + 1 << 5 | halfmove clock << 12 | fullmove << 32
+    private long state;
+    private long key;
+
+    public void copyFrom(Board board) {
+        long bishops = 0L;
+        long knights = 0L;
+        long rooks = 0L;
+        long queens = 0L;
+        long kings = 0L;
+        for (int color = Color.WHITE; color <= Color.BLACK; color <<= 1) {
+            bishops |= board.pieces(color, Piece.BISHOP);
+            knights |= board.pieces(color, Piece.KNIGHT);
+            rooks |= board.pieces(color, Piece.ROOK);
+            queens |= board.pieces(color, Piece.QUEEN);
+            kings |= board.pieces(color, Piece.KING);
+        }
+        occupied = board.occupied();
+        white = board.pieces(Color.WHITE);
+        plane0 = bishops | rooks | kings;
+        plane1 = knights | rooks;
+        plane2 = queens | kings;
+        state = Color.index(board.getSideToMove())
+                | board.getCastlingRights() << 1
+                | (board.getEnPassantSquare() + 1) << 5
+                | (long) Math.min(board.getHalfmoveClock(), 0xFFFFF) << 12
+                | (long) board.getFullmoveNumber() << 32;
+        key = board.hash();
+    }
+
+    public void copyFrom(Position other) {
+        occupied = other.occupied;
+        white = other.white;
+        plane0 = other.plane0;
+        plane1 = other.plane1;
+        plane2 = other.plane2;
+        state = other.state;
+        key = other.key;
+    }
+
+    public void copyInto(Position target) {
+        target.copyFrom(this);
+    }
+
+    // replaces target's position, and like Board.copyFrom starts it on an empty undo stack
+    public void copyInto(Board target) {
+        target.copyFrom(this);
+    }
+
+    // all squares holding type, both colors
+    long pieces(int typeIndex) {
+        long b = occupied;
+        b &= (typeIndex & 1) != 0 ? plane0 : ~plane0;
+        b &= (typeIndex & 2) != 0 ? plane1 : ~plane1;
+        b &= (typeIndex & 4) != 0 ? plane2 : ~plane2;
+        return b;
+    }
+
+    long occupied() {
+        return occupied;
+    }
+
+    long white() {
+        return white;
+    }
+
+    public int pieceAt(int sq) {
+        long b = 1L << sq;
+        if ((occupied & b) == 0) {
+            return 0;
+        }
+        int typeIndex = (int) ((plane0 >>> sq) & 1 | ((plane1 >>> sq) & 1) << 1 | ((plane2 >>> sq) & 1) << 2);
+        return 1 << typeIndex ^ ((white & b) != 0 ? Color.WHITE : Color.BLACK);
+    }
+
+    public int getSideToMove() {
+        return Color.WHITE << (int) (state & 1);
+    }
+
+    public int getCastlingRights() {
+        return (int) (state >>> 1) & Board.ALL_CASTLING;
+    }
+
+    public int getEnPassantSquare() {
+        return ((int) (state >>> 5) & 127) - 1;
+    }
+
+    public int getHalfmoveClock() {
+        return (int) (state >>> 12) & 0xFFFFF;
+    }
+
+    public int getFullmoveNumber() {
+        return (int) (state >>> 32);
+    }
+
+    public long hash() {
+        return key;
+    }
+}
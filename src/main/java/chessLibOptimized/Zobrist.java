@@ -0,0 +1,62 @@
+package chessLibOptimized;
+
+// Random keys for Zobrist hashing. The board keeps its key up to date as pieces and state change,
+// compute() is the from-scratch version used to check it.
+public final class Zobrist {
+    // [Piece.index(piece) * 64 + square]
+    static final long[] PIECES = new long[12 * 64];
+    // [castling rights]
+    static final long[] CASTLING = new long[16];
+    // [file of the en passant square]
+    static final long[] EN_PASSANT = new long[8];
+    // present when black is to move
+    static final long SIDE;
+
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    static {
+        // splitmix64 from a fixed seed, so keys are the same on every run
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < PIECES.length; i++) {
+            PIECES[i] = mix(seed += GAMMA);
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = mix(seed += GAMMA);
+        }
+        for (int i = 0; i < EN_PASSANT.length; i++) {
+            EN_PASSANT[i] = mix(seed += GAMMA);
+        }
+        SIDE = mix(seed + GAMMA);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long compute(Board board) {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = board.pieceAt(sq);
+            if (piece != 0) {
+                key ^= PIECES[Piece.index(piece) * 64 + sq];
+            }
+        }
+        return key ^ stateKey(board.getSideToMove(), board.getCastlingRights(), board.getEnPassantSquare());
+    }
+
+    static long stateKey(int sideToMove, int castlingRights, int enPassantSquare) {
+        long key = CASTLING[castlingRights];
+        if (sideToMove == Color.BLACK) {
+            key ^= SIDE;
+        }
+        if (enPassantSquare >= 0) {
+            key ^= EN_PASSANT[enPassantSquare & 7];
+        }
+        return key;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,339 @@
+package chessLibOptimized.batch;
+
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import lombok.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Classifies every line of a newline separated FEN or EPD file: side to move in check, mate, stalemate and the
+// number of legal moves. The input is memory-mapped in chunks that end on line boundaries and the chunks are
+// classified in parallel, each worker thread reusing one Game.
+//
+// The output is a HEADER_SIZE byte header (MAGIC, VERSION, line count as a long, all big endian) followed by one
+// RECORD_SIZE record per input line, in input order: a flags byte and the legal move count as an unsigned byte.
+// Blank and malformed lines keep their record with the INVALID flag set.
+//
+// usage: PositionClassifier <input> <output> [threads]
+public class PositionClassifier {
+    public static final int MAGIC = 0x45504443;   // "EPDC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 2;
+
+    public static final int IN_CHECK = 1;
+    public static final int MATE = 2;
+    public static final int STALEMATE = 4;
+    public static final int INVALID = 128;
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+
+    // longer lines are classified as INVALID
+    private static final int MAX_LINE = 4096;
+
+    private static final ThreadLocal<Worker> WORKERS = ThreadLocal.withInitial(Worker::new);
+
+    @Value
+    public static class Summary {
+        long positions;
+        long checks;
+        long mates;
+        long stalemates;
+        long invalid;
+        long timeMillis;
+    }
+
+    private PositionClassifier() {
+    }
+
+    public static Summary classify(Path input, Path output, ForkJoinPool pool) throws IOException {
+        return classify(input, output, pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    public static Summary classify(Path input, Path output, ForkJoinPool pool, int chunkSize) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<Chunk> chunks = split(in, chunkSize);
+
+            // first pass only counts lines, so every chunk knows where its records go
+            pool.submit(() -> RecursiveAction.invokeAll(tasks(chunks, in, null))).join();
+            long lines = 0;
+            for (Chunk chunk : chunks) {
+                chunk.firstLine = lines;
+                lines += chunk.lines;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(lines).flip();
+            writeFully(out, header, 0);
+
+            pool.submit(() -> RecursiveAction.invokeAll(tasks(chunks, in, out))).join();
+
+            long checks = 0;
+            long mates = 0;
+            long stalemates = 0;
+            long invalid = 0;
+            for (Chunk chunk : chunks) {
+                checks += chunk.checks;
+                mates += chunk.mates;
+                stalemates += chunk.stalemates;
+                invalid += chunk.invalid;
+            }
+            return new Summary(lines, checks, mates, stalemates, invalid, (System.nanoTime() - start) / 1_000_000);
+        } catch (UncheckedIOException e) {
+            // ForkJoinTask.join may rethrow a copy that wraps the original exception
+            Throwable cause = e;
+            while (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+
+    // Chunks of about chunkSize bytes, every one but the last ending just after a newline.
+    private static List<Chunk> split(FileChannel in, int chunkSize) throws IOException {
+        long size = in.size();
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            while (end < size) {
+                probe.clear();
+                int read = in.read(probe, end);
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end = read <= 0 ? size : Math.min(end + read, size);
+            }
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static List<ChunkTask> tasks(List<Chunk> chunks, FileChannel in, FileChannel out) {
+        List<ChunkTask> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(new ChunkTask(chunk, in, out));
+        }
+        return tasks;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: PositionClassifier <input> <output> [threads]");
+            System.exit(1);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Summary summary = classify(Paths.get(args[0]), Paths.get(args[1]), pool);
+            System.out.println("Positions: " + summary.getPositions());
+            System.out.println("Checks: " + summary.getChecks());
+            System.out.println("Mates: " + summary.getMates());
+            System.out.println("Stalemates: " + summary.getStalemates());
+            System.out.println("Invalid: " + summary.getInvalid());
+            System.out.println("Time: " + summary.getTimeMillis() + " ms");
+            System.out.println("Threads: " + threads);
+            long millis = Math.max(summary.getTimeMillis(), 1);
+            System.out.println("Positions/s: " + summary.getPositions() * 1000 / millis);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class Chunk {
+        final long start;
+        final long end;
+        long lines;
+        long firstLine;
+        long checks;
+        long mates;
+        long stalemates;
+        long invalid;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // per thread state, so a chunk costs no Game construction and no per line allocation
+    private static class Worker {
+        final Game game = new Game();
+        final byte[] line = new byte[MAX_LINE];
+        final int[] moves = new int[Moves.MAX_MOVES];
+
+        // flags and legal move count of one record
+        int classify(int length) {
+            int end = fenEnd(line, length);
+            if (end == 0) {
+                return INVALID << 8;
+            }
+            try {
+                game.loadGameFromFen(line, 0, end);
+            } catch (IllegalArgumentException e) {
+                return INVALID << 8;
+            }
+            int count = game.generateLegalMoves(moves);
+            boolean check = game.isCheck(game.getTurn());
+            int flags = check ? IN_CHECK : 0;
+            if (count == 0) {
+                flags |= check ? MATE : STALEMATE;
+            }
+            return flags << 8 | count;
+        }
+
+        // EPD has four position fields followed by operations, FEN has the two clocks instead: keep the four
+        // fields and the clocks only if both are there
+        private static int fenEnd(byte[] line, int length) {
+            int fields = 0;
+            int i = 0;
+            int end = 0;
+            while (i < length && fields < 6) {
+                while (i < length && line[i] == ' ') {
+                    ++i;
+                }
+                int fieldStart = i;
+                while (i < length && line[i] != ' ') {
+                    ++i;
+                }
+                if (i == fieldStart) {
+                    break;
+                }
+                ++fields;
+                if (fields <= 4) {
+                    end = i;
+                } else if (!isNumber(line, fieldStart, i)) {
+                    break;
+                } else if (fields == 6) {
+                    end = i;
+                }
+            }
+            return fields >= 2 ? end : 0;
+        }
+
+        private static boolean isNumber(byte[] line, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (line[i] < '0' || line[i] > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class ChunkTask extends RecursiveAction {
+        private final Chunk chunk;
+        private final FileChannel in;
+        // null in the counting pass
+        private final FileChannel out;
+
+        ChunkTask(Chunk chunk, FileChannel in, FileChannel out) {
+            this.chunk = chunk;
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+                if (out == null) {
+                    chunk.lines = countLines(data);
+                } else {
+                    classifyLines(data);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static long countLines(ByteBuffer data) {
+            long lines = 0;
+            int limit = data.limit();
+            for (int i = 0; i < limit; i++) {
+                if (data.get(i) == '\n') {
+                    ++lines;
+                }
+            }
+            // the last line of the file may have no newline
+            return limit > 0 && data.get(limit - 1) != '\n' ? lines + 1 : lines;
+        }
+
+        private void classifyLines(ByteBuffer data) throws IOException {
+            Worker worker = WORKERS.get();
+            ByteBuffer records = ByteBuffer.allocate((int) (chunk.lines * RECORD_SIZE));
+            int limit = data.limit();
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && data.get(lineEnd) != '\n') {
+                    ++lineEnd;
+                }
+                int length = lineEnd - lineStart;
+                if (length > 0 && data.get(lineEnd - 1) == '\r') {
+                    --length;
+                }
+                int record;
+                if (length > MAX_LINE) {
+                    record = INVALID << 8;
+                } else {
+                    data.get(lineStart, worker.line, 0, length);
+                    record = worker.classify(length);
+                }
+                records.putShort((short) record);
+                count(record >>> 8);
+                lineStart = lineEnd + 1;
+            }
+            records.flip();
+            writeFully(out, records, HEADER_SIZE + chunk.firstLine * RECORD_SIZE);
+        }
+
+        private void count(int flags) {
+            if ((flags & IN_CHECK) != 0) {
+                ++chunk.checks;
+            }
+            if ((flags & MATE) != 0) {
+                ++chunk.mates;
+            }
+            if ((flags & STALEMATE) != 0) {
+                ++chunk.stalemates;
+            }
+            if ((flags & INVALID) != 0) {
+                ++chunk.invalid;
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package chessLibOptimized.cache;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.GameSnapshot;
+import chessLibOptimized.Moves;
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded cache of the status and legal moves of recently seen positions, keyed by Zobrist key and shared by any
+// number of threads without locking.
+//
+// The table is WAYS-way set associative and every set is evicted with CLOCK: a hit marks its slot referenced, and
+// an insert into a full set sweeps the set's hand forward, clearing marks, until it finds an unmarked slot. Positions
+// seen once are inserted unmarked, so they go before anything that was hit again. Marks and hands are plain bytes
+// updated racily, which only ever makes eviction a little less exact. Results are immutable and their fields final,
+// so a slot read by another thread always holds a whole result.
+//
+// Keys are trusted like in the transposition table: two positions with the same 64-bit key share a result.
+public class PositionCache {
+    private static final int WAYS = 8;
+
+    private final Result[] slots;
+    private final byte[] referenced;
+    private final byte[] hands;
+    private final int setMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public PositionCache(int capacity) {
+        if (capacity < WAYS) {
+            throw new IllegalArgumentException("position cache needs at least " + WAYS + " entries, got " + capacity);
+        }
+        int sets = Integer.highestOneBit(capacity / WAYS);
+        slots = new Result[sets * WAYS];
+        referenced = new byte[sets * WAYS];
+        hands = new byte[sets];
+        setMask = sets - 1;
+    }
+
+    @Value
+    public static class Stats {
+        long hits;
+        long misses;
+        long evictions;
+        long size;
+
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+
+    // Status and legal moves of the side to move on board, computed and cached on a miss.
+    public Result lookup(Board board) {
+        Result result = probe(board.hash());
+        if (result == null) {
+            result = compute(board, scratch.get().moves);
+            insert(result);
+        }
+        return result;
+    }
+
+    // Same for a published snapshot, without the game lock: on a miss the position is forked into a board of the
+    // calling thread.
+    public Result lookup(GameSnapshot snapshot) {
+        Result result = probe(snapshot.getZobristKey());
+        if (result == null) {
+            Scratch s = scratch.get();
+            snapshot.copyInto(s.board);
+            result = compute(s.board, s.moves);
+            insert(result);
+        }
+        return result;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    // For diagnostics, not for hot paths: size is a full scan of every slot, O(capacity) per call. A counter would
+    // drift, two threads filling the same empty slot would both count it.
+    public Stats getStats() {
+        long size = 0;
+        for (Result result : slots) {
+            if (result != null) {
+                size++;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    // drops every entry, the counters are kept
+    public void clear() {
+        Arrays.fill(slots, null);
+        Arrays.fill(referenced, (byte) 0);
+    }
+
+    private Result probe(long key) {
+        int base = set(key);
+        for (int i = base; i < base + WAYS; i++) {
+            Result result = slots[i];
+            if (result != null && result.key == key) {
+                // only write the mark when it changes, hot entries are read by every core
+                if (referenced[i] == 0) {
+                    referenced[i] = 1;
+                }
+                hits.increment();
+                return result;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void insert(Result result) {
+        int set = (int) result.key & setMask;
+        int base = set * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            Result old = slots[i];
+            if (old == null || old.key == result.key) {
+                // another thread may have stored the same position meanwhile, then this replaces it
+                slots[i] = result;
+                return;
+            }
+        }
+        int hand = hands[set];
+        while (referenced[base + hand] != 0) {
+            referenced[base + hand] = 0;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        slots[base + hand] = result;
+        hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        evictions.increment();
+    }
+
+    private int set(long key) {
+        return ((int) key & setMask) * WAYS;
+    }
+
+    private static Result compute(Board board, int[] buffer) {
+        int n = board.generateLegalMoves(buffer, 0);
+        int status = 0;
+        if (board.isCheck(board.getSideToMove())) {
+            status |= Result.CHECK;
+        }
+        if (n == 0) {
+            status |= (status & Result.CHECK) != 0 ? Result.MATE : Result.STALEMATE;
+        }
+        return new Result(board.hash(), status, Arrays.copyOf(buffer, n));
+    }
+
+    // status and legal moves of the side to move, moves packed as described in Moves and in generator order
+    public static final class Result {
+        public static final int CHECK = 1;
+        public static final int MATE = 2;
+        public static final int STALEMATE = 4;
+
+        private final long key;
+        private final int status;
+        private final int[] moves;
+
+        private Result(long key, int status, int[] moves) {
+            this.key = key;
+            this.status = status;
+            this.moves = moves;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isCheck() {
+            return (status & CHECK) != 0;
+        }
+
+        public boolean isMate() {
+            return (status & MATE) != 0;
+        }
+
+        public boolean isStalemate() {
+            return (status & STALEMATE) != 0;
+        }
+
+        public int getMoveCount() {
+            return moves.length;
+        }
+
+        public int getMove(int index) {
+            return moves[index];
+        }
+
+        // copies the moves into buffer, which Moves.MAX_MOVES entries always fit, and returns their number
+        public int copyMoves(int[] buffer) {
+            System.arraycopy(moves, 0, buffer, 0, moves.length);
+            return moves.length;
+        }
+    }
+
+    private static class Scratch {
+        final Board board = new Board();
+        final int[] moves = new int[Moves.MAX_MOVES];
+    }
+}
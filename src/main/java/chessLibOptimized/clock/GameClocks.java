@@ -0,0 +1,212 @@
+package chessLibOptimized.clock;
+
+import chessLibOptimized.Color;
+import chessLibOptimized.Game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Running clocks of many games. The remaining times stay on the Game, charged through Game.setMovesTime; this only
+// keeps the flag-fall deadline of the side to move of every running game on a timing wheel, so no one polls games
+// to find who ran out of time. Flags fall at most one tick late and never early.
+//
+// Games are spread over shards by uuid, each with its own wheel and lock, so players of different shards never
+// contend. advance() fires every flag that has fallen; startTicking() calls it once per tick from one daemon thread, tests
+// call it themselves with their own TimeSource.
+public class GameClocks implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface FlagListener {
+        // called once per fallen flag, on the thread calling advance and without any lock held; what it throws goes
+        // to that thread's uncaught exception handler
+        void flagFell(Game game, int color);
+    }
+
+    private final TimeSource time;
+    private final long tickMillis;
+    private final long origin;
+    private final FlagListener listener;
+    private final Shard[] shards;
+    private final ConcurrentHashMap<UUID, Clock> clocks = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+
+    public GameClocks(FlagListener listener) {
+        this(TimeSource.SYSTEM, 10L, 16, listener);
+    }
+
+    public GameClocks(TimeSource time, long tickMillis, int shards, FlagListener listener) {
+        if (tickMillis < 1 || shards < 1) {
+            throw new IllegalArgumentException("tick and shards must be positive: " + tickMillis + ", " + shards);
+        }
+        this.time = time;
+        this.tickMillis = tickMillis;
+        this.origin = time.millis();
+        this.listener = listener;
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    // Starts the clock of the side to move, with the times already set on the game. Returns false when the game's
+    // clock is already running.
+    public boolean start(Game game) {
+        Clock clock = new Clock(game, shards[Math.floorMod(game.getUuid().hashCode(), shards.length)]);
+        if (clocks.putIfAbsent(game.getUuid(), clock) != null) {
+            return false;
+        }
+        synchronized (clock.shard) {
+            // a stop between putIfAbsent and here wins
+            if (clocks.get(game.getUuid()) == clock) {
+                long now = time.millis();
+                game.setLastTime(now);
+                schedule(clock, now);
+            }
+        }
+        return true;
+    }
+
+    // Call after every committed move: charges the time since the last move to the side that moved and reschedules
+    // the flag of the side now to move. Returns false when the clock is not running, because it was never started,
+    // was stopped or its flag has already fallen.
+    public boolean moved(Game game) {
+        Clock clock = clocks.get(game.getUuid());
+        if (clock == null) {
+            return false;
+        }
+        synchronized (clock.shard) {
+            if (!clock.isScheduled()) {
+                return false;
+            }
+            long now = time.millis();
+            game.setMovesTime(now);
+            schedule(clock, now);
+        }
+        return true;
+    }
+
+    // stops the clock without a flag; the times on the game are left as of the last move
+    public boolean stop(Game game) {
+        Clock clock = clocks.remove(game.getUuid());
+        if (clock == null) {
+            return false;
+        }
+        synchronized (clock.shard) {
+            clock.shard.wheel.cancel(clock);
+        }
+        return true;
+    }
+
+    public boolean isRunning(Game game) {
+        return clocks.containsKey(game.getUuid());
+    }
+
+    public int size() {
+        return clocks.size();
+    }
+
+    // Time left for color right now, counting the time spent on the current move when color is to move.
+    public long remainingMillis(Game game, int color) {
+        Clock clock = clocks.get(game.getUuid());
+        if (clock == null) {
+            return color == Color.WHITE ? game.getWhitesTime() : game.getBlacksTime();
+        }
+        synchronized (clock.shard) {
+            long left = color == Color.WHITE ? game.getWhitesTime() : game.getBlacksTime();
+            if (clock.isScheduled() && color == game.getTurn()) {
+                left -= time.millis() - game.getLastTime();
+            }
+            return Math.max(left, 0L);
+        }
+    }
+
+    // Fires every flag that has fallen by now and returns how many did. The side out of time is left with zero on
+    // the game and its clock is stopped.
+    public int advance() {
+        long now = time.millis();
+        long to = Math.floorDiv(now - origin, tickMillis);
+        int fired = 0;
+        for (Shard shard : shards) {
+            List<Clock> fallen = shard.fallen;
+            synchronized (shard) {
+                shard.wheel.advance(to, timer -> {
+                    Clock clock = (Clock) timer;
+                    clock.flagged = clock.game.getTurn();
+                    if (clock.flagged == Color.WHITE) {
+                        clock.game.setWhitesTime(0L);
+                    } else {
+                        clock.game.setBlacksTime(0L);
+                    }
+                    fallen.add(clock);
+                });
+            }
+            // only the thread calling advance touches the list, advance itself is not meant to run concurrently
+            try {
+                for (Clock clock : fallen) {
+                    clocks.remove(clock.game.getUuid(), clock);
+                    try {
+                        listener.flagFell(clock.game, clock.flagged);
+                    } catch (RuntimeException e) {
+                        // one failing listener call must not cost the other games their flags
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+                fired += fallen.size();
+            } finally {
+                fallen.clear();
+            }
+        }
+        return fired;
+    }
+
+    // Calls advance once per tick from a daemon thread until close. A listener that throws is reported to the
+    // thread's uncaught exception handler and the ticker carries on.
+    public synchronized void startTicking() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "game-clocks");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    // deadline of the side to move, with the game's last move at now
+    private void schedule(Clock clock, long now) {
+        Game game = clock.game;
+        long left = game.getTurn() == Color.WHITE ? game.getWhitesTime() : game.getBlacksTime();
+        long deadline = now + left - origin;
+        clock.shard.wheel.schedule(clock, Math.floorDiv(deadline + tickMillis - 1, tickMillis));
+    }
+
+    private static final class Shard {
+        final TimerWheel wheel = new TimerWheel(0L);
+        final List<Clock> fallen = new ArrayList<>();
+    }
+
+    private static final class Clock extends TimerWheel.Timer {
+        final Game game;
+        final Shard shard;
+        int flagged;
+
+        Clock(Game game, Shard shard) {
+            this.game = game;
+            this.shard = shard;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package chessLibOptimized.clock;
+
+// Wall-clock milliseconds, the same time base Game.setMovesTime is given. Tests pass their own to drive clocks
+// deterministically.
+@FunctionalInterface
+public interface TimeSource {
+    TimeSource SYSTEM = System::currentTimeMillis;
+
+    long millis();
+}
@@ -0,0 +1,160 @@
+package chessLibOptimized.clock;
+
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel of LEVELS wheels with SLOTS slots each. Level k holds timers due in less than
+// SLOTS^(k+1) ticks, in the slot of their deadline's k-th group of BITS bits, and a level's slot is moved down
+// (cascaded) when the level below wraps around. Scheduling, rescheduling and cancelling unlink or link one node
+// of an intrusive list, so they are O(1) whatever the number of timers; advancing costs one step per tick plus one
+// relink per cascade level a timer passes through.
+//
+// Timers further away than the whole wheel, about 16.7M ticks, wait in the top level and are placed again as it
+// turns. Nothing here is thread safe, callers lock around it.
+final class TimerWheel {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    private final Timer[] slots = new Timer[LEVELS * SLOTS];
+    // every timer due at or before tick has been handed out
+    private long tick;
+    private int size;
+
+    TimerWheel(long tick) {
+        this.tick = tick;
+    }
+
+    static class Timer {
+        private long deadline;
+        private Timer prev;
+        private Timer next;
+        private int slot = -1;
+
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // schedules timer, or moves it if it is already scheduled; deadlines at or before the current tick fire on the
+    // next one
+    void schedule(Timer timer, long deadline) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+        }
+        timer.deadline = deadline;
+        link(timer);
+    }
+
+    void cancel(Timer timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+        }
+    }
+
+    // Moves the wheel to tick to, handing every timer that became due to expired after taking it off the wheel.
+    void advance(long to, Consumer<Timer> expired) {
+        while (tick < to) {
+            if (size == 0) {
+                tick = to;
+                return;
+            }
+            int index = (int) ++tick & MASK;
+            if (index == 0) {
+                cascade(1);
+            }
+            Timer timer = slots[index];
+            slots[index] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.prev = timer.next = null;
+                timer.slot = -1;
+                --size;
+                if (timer.deadline <= tick) {
+                    expired.accept(timer);
+                } else {
+                    link(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    // the slot of level for the current tick is about to be reached: spread its timers over the lower levels,
+    // after filling it from the level above if that one wraps too
+    private void cascade(int level) {
+        if (level == LEVELS) {
+            return;
+        }
+        int index = (int) (tick >>> (BITS * level)) & MASK;
+        if (index == 0) {
+            cascade(level + 1);
+        }
+        int slot = level * SLOTS + index;
+        Timer timer = slots[slot];
+        slots[slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.prev = timer.next = null;
+            timer.slot = -1;
+            --size;
+            link(timer);
+            timer = next;
+        }
+    }
+
+    private void link(Timer timer) {
+        long deadline = timer.deadline;
+        long delta = deadline - tick;
+        int slot;
+        if (delta <= 0) {
+            slot = (int) (tick + 1) & MASK;
+        } else {
+            if (delta >= SPAN) {
+                // placed again when the top level comes back to this slot, which is never later than deadline
+                deadline = tick + SPAN - 1;
+                delta = SPAN - 1;
+            }
+            int level = 0;
+            while (delta >= 1L << (BITS * (level + 1))) {
+                ++level;
+            }
+            slot = level * SLOTS + ((int) (deadline >>> (BITS * level)) & MASK);
+        }
+        Timer head = slots[slot];
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[slot] = timer;
+        timer.slot = slot;
+        ++size;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = timer.next = null;
+        timer.slot = -1;
+        --size;
+    }
+}
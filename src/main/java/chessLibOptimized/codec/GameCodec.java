@@ -0,0 +1,161 @@
+package chessLibOptimized.codec;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Compact binary encoding of a whole game, about one byte per ply:
+//
+//   byte    VERSION << 4 | flags, CUSTOM_START when the game does not start from the standard position
+//   varint  number of plies
+//   varint  FEN length and the FEN in ASCII, only with CUSTOM_START
+//   byte[]  for every ply, the index of the move played among the legal moves of the position, in canonical order
+//
+// The canonical order sorts moves by from square, to square and promotion (the low 15 bits of a packed move), so
+// encoded games do not depend on the order the move generator happens to produce. No position has more than 218
+// legal moves, so an index always fits in a byte. Records carry their own length and can be stored back to back.
+public final class GameCodec {
+    public static final int VERSION = 1;
+    public static final int CUSTOM_START = 1;
+
+    private static final int KEY_MASK = (1 << 15) - 1;
+    private static final byte[] STANDARD_START = Fen.STARTING_POSITION.getBytes(StandardCharsets.US_ASCII);
+
+    private GameCodec() {
+    }
+
+    public static byte[] encode(Game game) {
+        Board board = new Board();
+        int[] moves = game.copyStartingBoardInto(board);
+        return encode(board, moves, moves.length);
+    }
+
+    // Encodes count moves played from start, which is left at the final position.
+    public static byte[] encode(Board start, int[] moves, int count) {
+        byte[] fen = new byte[Fen.MAX_LENGTH];
+        int fenLength = Fen.toFen(start, fen, 0);
+        boolean custom = !Arrays.equals(fen, 0, fenLength, STANDARD_START, 0, STANDARD_START.length);
+
+        ByteBuffer out = ByteBuffer.allocate(1 + 5 + (custom ? 5 + fenLength : 0) + count);
+        out.put((byte) (VERSION << 4 | (custom ? CUSTOM_START : 0)));
+        putVarint(out, count);
+        if (custom) {
+            putVarint(out, fenLength);
+            out.put(fen, 0, fenLength);
+        }
+        int[] legal = new int[Moves.MAX_MOVES];
+        for (int i = 0; i < count; i++) {
+            out.put((byte) index(start, moves[i], legal));
+            start.makeMove(moves[i]);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    public static Game decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    // Reads one record from buffer's position and leaves the position after it.
+    public static Game decode(ByteBuffer buffer) {
+        Game game = new Game();
+        decodeInto(buffer, game);
+        return game;
+    }
+
+    // Replaces the game's position and history with the record at buffer's position, playing the moves through
+    // Game.move one at a time. Throws IllegalArgumentException for records that are truncated or do not replay.
+    public static void decodeInto(ByteBuffer buffer, Game game) {
+        try {
+            int header = buffer.get() & 0xFF;
+            if (header >>> 4 != VERSION) {
+                throw new IllegalArgumentException("unsupported game record version " + (header >>> 4));
+            }
+            int count = getVarint(buffer);
+            if ((header & CUSTOM_START) != 0) {
+                int fenLength = getVarint(buffer);
+                if (fenLength > Fen.MAX_LENGTH) {
+                    throw new IllegalArgumentException("FEN of " + fenLength + " bytes in game record");
+                }
+                byte[] fen = new byte[fenLength];
+                buffer.get(fen);
+                game.loadGameFromFen(fen, 0, fenLength);
+            } else {
+                game.loadGameFromFen(Fen.STARTING_POSITION);
+            }
+
+            int[] legal = new int[Moves.MAX_MOVES];
+            for (int i = 0; i < count; i++) {
+                int index = buffer.get() & 0xFF;
+                int n = game.generateLegalMoves(legal);
+                if (index >= n) {
+                    throw new IllegalArgumentException("move index " + index + " of " + n + " at ply " + i);
+                }
+                int move = select(legal, n, index);
+                int from = Moves.from(move);
+                int to = Moves.to(move);
+                game.move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.promotion(move));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated game record", e);
+        }
+    }
+
+    // position of move among the legal moves of board in canonical order
+    private static int index(Board board, int move, int[] legal) {
+        int n = board.generateLegalMoves(legal, 0);
+        int key = move & KEY_MASK;
+        int index = 0;
+        boolean found = false;
+        for (int i = 0; i < n; i++) {
+            int other = legal[i] & KEY_MASK;
+            if (other < key) {
+                ++index;
+            } else if (other == key) {
+                found = true;
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException("illegal move " + Moves.toUci(move));
+        }
+        return index;
+    }
+
+    // From, to and promotion of the legal move at index in canonical order. That is all Game.move needs, so
+    // the rest of the packed move is dropped and the keys are sorted in place.
+    private static int select(int[] legal, int n, int index) {
+        for (int i = 0; i < n; i++) {
+            legal[i] &= KEY_MASK;
+        }
+        Arrays.sort(legal, 0, n);
+        return legal[index];
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("bad length in game record");
+    }
+}
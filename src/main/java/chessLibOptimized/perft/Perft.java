@@ -0,0 +1,127 @@
+package chessLibOptimized.perft;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts the leaf nodes of the legal move tree, the usual way to check and time a move generator.
+//
+// usage: Perft "<fen>" <depth> [threads]
+public class Perft {
+    private final Board board;
+    private final int[][] moves;
+
+    public Perft(Board board, int maxDepth) {
+        this.board = board;
+        this.moves = new int[Math.max(maxDepth, 1)][Moves.MAX_MOVES];
+    }
+
+    public long count(int depth) {
+        if (depth < 0 || depth > moves.length) {
+            throw new IllegalArgumentException("perft depth " + depth + " outside 0.." + moves.length);
+        }
+        return depth == 0 ? 1 : count(depth, 0);
+    }
+
+    private long count(int depth, int ply) {
+        int[] buffer = moves[ply];
+        int n = board.generateLegalMoves(buffer, 0);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            board.makeMove(buffer[i]);
+            nodes += count(depth - 1, ply + 1);
+            board.unmakeMove(buffer[i]);
+        }
+        return nodes;
+    }
+
+    public static long perft(Game game, int depth) {
+        Board board = new Board();
+        game.copyBoardInto(board);
+        return new Perft(board, depth).count(depth);
+    }
+
+    // Node count below every root move, in generation order. Root moves are searched in parallel on pool.
+    public static Map<Integer, Long> divide(Game game, int depth, ForkJoinPool pool) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("divide needs a depth of at least 1, got " + depth);
+        }
+        Board root = new Board();
+        game.copyBoardInto(root);
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int n = root.generateLegalMoves(buffer, 0);
+
+        List<DivideTask> tasks = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            tasks.add(new DivideTask(root, buffer[i], depth - 1));
+        }
+        pool.submit(() -> DivideTask.invokeAll(tasks)).join();
+
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (DivideTask task : tasks) {
+            result.put(task.move, task.join());
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: Perft \"<fen>\" <depth> [threads]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Game game = new Game();
+        game.loadGameFromFen(args[0]);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            Map<Integer, Long> divide = divide(game, Math.max(depth, 1), pool);
+            long elapsed = System.nanoTime() - start;
+
+            long nodes = 0;
+            for (Map.Entry<Integer, Long> entry : divide.entrySet()) {
+                System.out.println(Moves.toUci(entry.getKey()) + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+            System.out.println();
+            System.out.println("Nodes: " + nodes);
+            System.out.println("Time: " + elapsed / 1_000_000 + " ms");
+            System.out.println("Threads: " + threads);
+            System.out.println("NPS: " + (elapsed == 0 ? 0 : nodes * 1_000_000_000L / elapsed));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class DivideTask extends RecursiveTask<Long> {
+        private final Board root;
+        private final int move;
+        private final int depth;
+
+        DivideTask(Board root, int move, int depth) {
+            this.root = root;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            Board board = new Board();
+            board.copyFrom(root);
+            board.makeMove(move);
+            return new Perft(board, depth).count(depth);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package chessLibOptimized.pgn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Imports a PGN file in parallel. The file is cut into chunks that start at a game's first tag, every chunk is
+// memory-mapped and read by its own PgnReader on the pool, and each game is handed to the consumer on the thread
+// that read it, so the consumer must be thread safe. Games arrive in file order within a chunk only.
+//
+// usage: PgnImporter <file> [threads]
+public class PgnImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+
+    private PgnImporter() {
+    }
+
+    // returns the number of games read
+    public static long importGames(Path file, ForkJoinPool pool, Consumer<PgnReader> consumer) throws IOException {
+        return importGames(file, pool, DEFAULT_CHUNK_SIZE, consumer);
+    }
+
+    public static long importGames(Path file, ForkJoinPool pool, int chunkSize, Consumer<PgnReader> consumer)
+            throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<ChunkTask> tasks = new ArrayList<>();
+            long size = in.size();
+            long start = 0;
+            while (start < size) {
+                long end = gameStart(in, Math.min(start + chunkSize, size), size);
+                tasks.add(new ChunkTask(in, start, end, consumer));
+                start = end;
+            }
+            pool.submit(() -> ChunkTask.invokeAll(tasks)).join();
+            long games = 0;
+            for (ChunkTask task : tasks) {
+                games += task.join();
+            }
+            return games;
+        } catch (UncheckedIOException e) {
+            Throwable cause = e;
+            while (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+
+    // First offset at or after from of a '[' that follows a blank line, which in export format PGN is only ever
+    // the first tag of a game; size when there is none. Files without blank lines simply end up as fewer chunks.
+    private static long gameStart(FileChannel in, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+        // newlines seen since the last character that was not whitespace
+        int newlines = 0;
+        long offset = from;
+        while (offset < size) {
+            buffer.clear();
+            int read = in.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte c = buffer.get(i);
+                if (c == '\n') {
+                    ++newlines;
+                } else if (c == '[' && newlines >= 2) {
+                    return offset + i;
+                } else if (c != '\r' && c != ' ' && c != '\t') {
+                    newlines = 0;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: PgnImporter <file> [threads]");
+            System.exit(1);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            LongAdder plies = new LongAdder();
+            LongAdder errors = new LongAdder();
+            long start = System.nanoTime();
+            long games = importGames(Paths.get(args[0]), pool, reader -> {
+                plies.add(reader.getMoveCount());
+                if (reader.getError() != null) {
+                    errors.increment();
+                }
+            });
+            long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+            System.out.println("Games: " + games);
+            System.out.println("Plies: " + plies.sum());
+            System.out.println("Games with errors: " + errors.sum());
+            System.out.println("Time: " + millis + " ms");
+            System.out.println("Threads: " + threads);
+            System.out.println("Games/s: " + games * 1000 / millis);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class ChunkTask extends RecursiveTask<Long> {
+        private final FileChannel in;
+        private final long start;
+        private final long end;
+        private final Consumer<PgnReader> consumer;
+
+        ChunkTask(FileChannel in, long start, long end, Consumer<PgnReader> consumer) {
+            this.in = in;
+            this.start = start;
+            this.end = end;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                PgnReader reader = new PgnReader(data);
+                long games = 0;
+                while (reader.next()) {
+                    consumer.accept(reader);
+                    ++games;
+                }
+                return games;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package chessLibOptimized.pgn;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Reads the games of a PGN export one at a time straight from a buffer, typically a mapped file. Every SAN move
+// is resolved and played on the reader's own board while reading, so the moves come out packed and known legal.
+//
+// Buffers are reused from game to game: getMoves() and getTags() are only valid until the next call to next().
+// Comments, variations, NAGs and escape lines are skipped. A game with a move that cannot be resolved keeps the
+// moves before it and reports the problem in getError(). A game whose FEN tag cannot be parsed is rejected: it has
+// no moves, getError() says why and toGame() throws.
+public class PgnReader {
+    private static final int MAX_TOKEN = 64;
+
+    private final ByteBuffer data;
+    private final int origin;
+    private final int limit;
+    private int pos;
+
+    private final Board board = new Board();
+    private final int[] legalMoves = new int[Moves.MAX_MOVES];
+    private final byte[] token = new byte[MAX_TOKEN];
+    private byte[] tagValue = new byte[256];
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private int[] moves = new int[256];
+    private int moveCount;
+    private String result;
+    private String error;
+    private boolean rejected;
+
+    // reads data from its position to its limit
+    public PgnReader(ByteBuffer data) {
+        this.data = data;
+        this.origin = data.position();
+        this.pos = origin;
+        this.limit = data.limit();
+    }
+
+    // Advances to the next game, returns false at the end of the input.
+    public boolean next() {
+        tags.clear();
+        moveCount = 0;
+        result = null;
+        error = null;
+        rejected = false;
+
+        skipWhitespace();
+        if (pos >= limit) {
+            return false;
+        }
+        while (pos < limit && data.get(pos) == '[') {
+            readTag();
+            skipWhitespace();
+        }
+        startPosition();
+        readMovetext();
+        return true;
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    // packed moves of the current game, the first getMoveCount() entries are valid
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int[] copyMoves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    // the game termination marker, 1-0, 0-1, 1/2-1/2 or *, null when the movetext ended without one
+    public String getResult() {
+        return result;
+    }
+
+    // null when every move of the game could be read
+    public String getError() {
+        return error;
+    }
+
+    // the final position of the current game
+    public Board getBoard() {
+        return board;
+    }
+
+    // Replays the current game on a new Game. Throws IllegalArgumentException when the game was rejected.
+    public Game toGame() {
+        if (rejected) {
+            throw new IllegalArgumentException(error);
+        }
+        Game game = new Game();
+        String fen = tags.get("FEN");
+        if (fen != null) {
+            game.loadGameFromFen(fen);
+        }
+        for (int i = 0; i < moveCount; i++) {
+            int from = Moves.from(moves[i]);
+            int to = Moves.to(moves[i]);
+            game.move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.promotion(moves[i]));
+        }
+        return game;
+    }
+
+    private void startPosition() {
+        String fen = tags.get("FEN");
+        if (fen == null) {
+            board.setUpStartingPosition();
+            return;
+        }
+        try {
+            Fen.parse(fen, board);
+        } catch (IllegalArgumentException e) {
+            // the movetext is still read past, but no move is played on the fallback position
+            board.setUpStartingPosition();
+            error = e.getMessage();
+            rejected = true;
+        }
+    }
+
+    // [Name "value"], with \" and \\ escapes in the value, which is decoded as UTF-8
+    private void readTag() {
+        ++pos;
+        int nameStart = pos;
+        while (pos < limit && !isWhitespace(data.get(pos)) && data.get(pos) != ']') {
+            ++pos;
+        }
+        String name = ascii(nameStart, pos);
+        while (pos < limit && data.get(pos) != '"' && data.get(pos) != ']' && data.get(pos) != '\n') {
+            ++pos;
+        }
+        int length = 0;
+        if (pos < limit && data.get(pos) == '"') {
+            ++pos;
+            while (pos < limit && data.get(pos) != '"' && data.get(pos) != '\n') {
+                byte c = data.get(pos++);
+                if (c == '\\' && pos < limit) {
+                    c = data.get(pos++);
+                }
+                if (length == tagValue.length) {
+                    tagValue = Arrays.copyOf(tagValue, length * 2);
+                }
+                tagValue[length++] = c;
+            }
+        }
+        while (pos < limit && data.get(pos) != ']' && data.get(pos) != '\n') {
+            ++pos;
+        }
+        if (pos < limit && data.get(pos) == ']') {
+            ++pos;
+        }
+        tags.put(name, new String(tagValue, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private void readMovetext() {
+        while (true) {
+            skipWhitespace();
+            if (pos >= limit) {
+                return;
+            }
+            byte c = data.get(pos);
+            if (c == '[' && atLineStart(pos)) {
+                // the next game's tags, this one had no termination marker
+                return;
+            }
+            switch (c) {
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                case '(' -> skipVariation();
+                case '%' -> {
+                    if (atLineStart(pos)) {
+                        skipPast('\n');
+                    } else {
+                        ++pos;
+                    }
+                }
+                default -> {
+                    int start = pos;
+                    while (pos < limit && !isDelimiter(data.get(pos))) {
+                        ++pos;
+                    }
+                    if (pos == start) {
+                        ++pos;
+                    } else if (token(start, pos)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // handles one movetext token, returns true when it ends the game
+    private boolean token(int start, int end) {
+        byte first = data.get(start);
+        if (isResult(start, end)) {
+            result = ascii(start, end);
+            return true;
+        }
+        if (first == '$' || (first >= '0' && first <= '9' && !isCastling(start, end))) {
+            // NAG or move number, move numbers may run straight into the move: 12.e4
+            int i = start;
+            while (i < end && (Character.isDigit(data.get(i)) || data.get(i) == '.' || data.get(i) == '$')) {
+                ++i;
+            }
+            if (first == '$' || i == end) {
+                return false;
+            }
+            start = i;
+        }
+        if (error != null) {
+            return false;
+        }
+        int length = end - start;
+        if (length > MAX_TOKEN) {
+            error = "move too long at " + start;
+            return false;
+        }
+        data.get(start, token, 0, length);
+        int move = San.parse(board, token, 0, length, legalMoves);
+        if (move == Moves.NONE) {
+            error = "illegal or ambiguous move " + ascii(start, end) + " after " + moveCount + " plies";
+            return false;
+        }
+        board.makeMove(move);
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+        return false;
+    }
+
+    private boolean isResult(int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return data.get(start) == '*';
+        }
+        if (length == 3) {
+            return matches(start, "1-0") || matches(start, "0-1");
+        }
+        return length == 7 && matches(start, "1/2-1/2");
+    }
+
+    private boolean isCastling(int start, int end) {
+        return end - start >= 3 && data.get(start) == '0' && data.get(start + 1) == '-';
+    }
+
+    private boolean matches(int start, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (data.get(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipVariation() {
+        int depth = 0;
+        while (pos < limit) {
+            byte c = data.get(pos++);
+            if (c == '(') {
+                ++depth;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            } else if (c == '{') {
+                skipPast('}');
+            }
+        }
+    }
+
+    private void skipPast(char end) {
+        while (pos < limit && data.get(pos) != end) {
+            ++pos;
+        }
+        ++pos;
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit && isWhitespace(data.get(pos))) {
+            ++pos;
+        }
+    }
+
+    private boolean atLineStart(int i) {
+        return i == origin || data.get(i - 1) == '\n';
+    }
+
+    private static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean isDelimiter(byte c) {
+        return isWhitespace(c) || c == '{' || c == '(' || c == ')' || c == ';';
+    }
+
+    private String ascii(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        data.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,140 @@
+package chessLibOptimized.pgn;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+
+import java.nio.charset.StandardCharsets;
+
+// Standard algebraic notation, resolved against the legal moves of a position.
+//
+// Accepts what PGN exports actually contain: check and annotation suffixes (+, #, !, ?), O-O written with zeros,
+// promotions with or without '=', and more disambiguation than needed. A promotion with no piece is taken as a queen.
+public final class San {
+
+    private San() {
+    }
+
+    // the packed legal move text stands for, or Moves.NONE when there is no such move or it is ambiguous
+    public static int parse(Board board, CharSequence text) {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        return parse(board, bytes, 0, bytes.length, new int[Moves.MAX_MOVES]);
+    }
+
+    // Same as parse(Board, CharSequence) for the ASCII text in san[offset, offset + length); moves is scratch space
+    // of at least Moves.MAX_MOVES entries.
+    public static int parse(Board board, byte[] san, int offset, int length, int[] moves) {
+        int end = offset + length;
+        while (end > offset && isSuffix(san[end - 1])) {
+            --end;
+        }
+        int start = offset;
+        if (end - start < 2) {
+            return Moves.NONE;
+        }
+        int count = board.generateLegalMoves(moves, 0);
+
+        if (san[start] == 'O' || san[start] == '0') {
+            boolean queenSide;
+            if (end - start == 3 && san[start + 1] == '-' && san[start + 2] == san[start]) {
+                queenSide = false;
+            } else if (end - start == 5 && san[start + 1] == '-' && san[start + 2] == san[start]
+                    && san[start + 3] == '-' && san[start + 4] == san[start]) {
+                queenSide = true;
+            } else {
+                return Moves.NONE;
+            }
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if ((Moves.flags(move) & Moves.CASTLING) != 0 && (Moves.to(move) < Moves.from(move)) == queenSide) {
+                    return move;
+                }
+            }
+            return Moves.NONE;
+        }
+
+        int piece = pieceType(san[start]);
+        if (piece != 0) {
+            ++start;
+        } else {
+            piece = Piece.PAWN;
+        }
+
+        int promotion = 0;
+        if (piece == Piece.PAWN && end - start >= 3) {
+            promotion = pieceType(san[end - 1]);
+            if (promotion != 0) {
+                if (promotion == Piece.KING || promotion == Piece.PAWN) {
+                    return Moves.NONE;
+                }
+                --end;
+                if (san[end - 1] == '=') {
+                    --end;
+                }
+            }
+        }
+
+        if (end - start < 2) {
+            return Moves.NONE;
+        }
+        int toFile = san[end - 2] - 'a';
+        int toRank = san[end - 1] - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return Moves.NONE;
+        }
+        int to = toRank * 8 + toFile;
+
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            byte c = san[i];
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Moves.NONE;
+            }
+        }
+
+        int found = Moves.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (Moves.to(move) != to || Moves.piece(move) != piece) {
+                continue;
+            }
+            int from = Moves.from(move);
+            if ((fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+                continue;
+            }
+            if (Moves.isPromotion(move) && Moves.promotion(move) != (promotion == 0 ? Piece.QUEEN : promotion)) {
+                continue;
+            }
+            if (!Moves.isPromotion(move) && promotion != 0) {
+                continue;
+            }
+            if (found != Moves.NONE) {
+                return Moves.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    private static boolean isSuffix(byte c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    // piece type for an upper case SAN piece letter, 0 otherwise
+    private static int pieceType(byte c) {
+        return switch (c) {
+            case 'N' -> Piece.KNIGHT;
+            case 'B' -> Piece.BISHOP;
+            case 'R' -> Piece.ROOK;
+            case 'Q' -> Piece.QUEEN;
+            case 'K' -> Piece.KING;
+            case 'P' -> Piece.PAWN;
+            default -> 0;
+        };
+    }
+}
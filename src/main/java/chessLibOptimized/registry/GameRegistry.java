@@ -0,0 +1,147 @@
+package chessLibOptimized.registry;
+
+import chessLibOptimized.Game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Live games by game uuid and by player uuid, safe for any number of threads and without a global lock: both
+// indexes are ConcurrentHashMaps, so writers only contend when they hash to the same bin. The player index is only
+// changed while holding the game's bin in the game index, which keeps the two consistent for every single game.
+//
+// The player index records the players a game had when it was registered or last passed to setPlayers; changing
+// them on the Game directly is not seen here.
+public class GameRegistry {
+    private final ConcurrentHashMap<UUID, Entry> games;
+    private final ConcurrentHashMap<UUID, Set<UUID>> gamesByPlayer;
+
+    public GameRegistry() {
+        this(1024);
+    }
+
+    public GameRegistry(int expectedGames) {
+        games = new ConcurrentHashMap<>(expectedGames);
+        gamesByPlayer = new ConcurrentHashMap<>(expectedGames * 2);
+    }
+
+    public Game create(UUID whitePlayer, UUID blackPlayer) {
+        Game game = new Game(whitePlayer);
+        game.setBlackPlayerUuid(blackPlayer);
+        register(game);
+        return game;
+    }
+
+    // Returns false, and changes nothing, when a game with the same uuid is already registered.
+    public boolean register(Game game) {
+        Entry entry = new Entry(game, game.getWhitePlayerUuid(), game.getBlackPlayerUuid());
+        return games.computeIfAbsent(game.getUuid(), id -> {
+            index(entry.white, id);
+            index(entry.black, id);
+            return entry;
+        }) == entry;
+    }
+
+    public Game remove(UUID gameId) {
+        Entry[] removed = new Entry[1];
+        games.computeIfPresent(gameId, (id, entry) -> {
+            unindex(entry.white, id);
+            unindex(entry.black, id);
+            removed[0] = entry;
+            return null;
+        });
+        return removed[0] == null ? null : removed[0].game;
+    }
+
+    public Game get(UUID gameId) {
+        Entry entry = games.get(gameId);
+        return entry == null ? null : entry.game;
+    }
+
+    public boolean contains(UUID gameId) {
+        return games.containsKey(gameId);
+    }
+
+    // Changes the players of a registered game and reindexes it. Returns false when the game is not registered.
+    public boolean setPlayers(UUID gameId, UUID whitePlayer, UUID blackPlayer) {
+        return games.computeIfPresent(gameId, (id, entry) -> {
+            unindex(entry.white, id);
+            unindex(entry.black, id);
+            entry.game.setWhitePlayerUuid(whitePlayer);
+            entry.game.setBlackPlayerUuid(blackPlayer);
+            index(whitePlayer, id);
+            index(blackPlayer, id);
+            return new Entry(entry.game, whitePlayer, blackPlayer);
+        }) != null;
+    }
+
+    // the games the player takes part in, as either color
+    public List<Game> gamesOf(UUID playerId) {
+        Set<UUID> ids = gamesByPlayer.get(playerId);
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<Game> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            Entry entry = games.get(id);
+            if (entry != null && (playerId.equals(entry.white) || playerId.equals(entry.black))) {
+                result.add(entry.game);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    // Weakly consistent sweep over all games, for clocks, timeouts and cleanup. Safe to call while games are
+    // created and removed, including from action itself.
+    public void forEach(Consumer<Game> action) {
+        for (Entry entry : games.values()) {
+            action.accept(entry.game);
+        }
+    }
+
+    // Same as forEach, split across the common ForkJoinPool once there are more than parallelismThreshold games.
+    public void forEach(long parallelismThreshold, Consumer<Game> action) {
+        games.forEachValue(parallelismThreshold, entry -> action.accept(entry.game));
+    }
+
+    private void index(UUID player, UUID gameId) {
+        if (player != null) {
+            gamesByPlayer.compute(player, (p, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                }
+                ids.add(gameId);
+                return ids;
+            });
+        }
+    }
+
+    private void unindex(UUID player, UUID gameId) {
+        if (player != null) {
+            gamesByPlayer.computeIfPresent(player, (p, ids) -> {
+                ids.remove(gameId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static class Entry {
+        final Game game;
+        final UUID white;
+        final UUID black;
+
+        Entry(Game game, UUID white, UUID black) {
+            this.game = game;
+            this.white = white;
+            this.black = black;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package chessLibOptimized.search;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Lazy SMP: every thread runs its own Search over the same root position and they cooperate only through the
+// shared transposition table. The main search decides when to stop and its result is the one returned; helpers
+// run without limits until it finishes. Helpers with an odd id search one ply deeper to spread the work.
+//
+// The Game is copied once at the start, after that no thread touches it.
+//
+// usage: ParallelSearch <depth> <maxThreads> ["<fen>"...]
+public class ParallelSearch implements AutoCloseable {
+    private static final String[] BENCH_POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    public ParallelSearch(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.table = table;
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table, i);
+        }
+        helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, r -> {
+            Thread thread = new Thread(r, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    public SearchResult search(Game game, SearchLimits limits) {
+        Board root = new Board();
+        game.copyBoardInto(root);
+        return search(root, limits);
+    }
+
+    // nodes in the result are summed over all threads
+    public SearchResult search(Board root, SearchLimits limits) {
+        SearchLimits helperLimits = SearchLimits.depth(Search.MAX_PLY);
+        List<Future<SearchResult>> running = new ArrayList<>(searches.length - 1);
+        // one generation for the whole search, the threads share it
+        table.newSearch();
+        for (Search search : searches) {
+            search.clearStop();
+        }
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            running.add(helpers.submit(() -> helper.searchPrepared(root, helperLimits)));
+        }
+
+        SearchResult main;
+        try {
+            main = searches[0].searchPrepared(root, limits);
+        } finally {
+            for (int i = 1; i < searches.length; i++) {
+                searches[i].stop();
+            }
+            awaitAll(running);
+        }
+
+        long nodes = 0;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+        }
+        return new SearchResult(main.getBestMove(), main.getScore(), main.getDepth(), nodes, main.getTimeMillis(),
+                main.getPrincipalVariation());
+    }
+
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    private static void awaitAll(List<Future<SearchResult>> running) {
+        boolean interrupted = false;
+        for (Future<SearchResult> future : running) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("helper search failed", e.getCause());
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Time to a fixed depth and nodes per second for 1, 2, 4... up to maxThreads threads. Speedup is the
+    // single thread time to depth divided by the time with n threads.
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: ParallelSearch <depth> <maxThreads> [\"<fen>\"...]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        int maxThreads = Integer.parseInt(args[1]);
+        String[] fens = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : BENCH_POSITIONS;
+
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < maxThreads; threads <<= 1) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+
+        TranspositionTable table = new TranspositionTable(64);
+        long baseline = 0;
+        System.out.println("threads      time ms         nodes          nps   nps/thread  speedup");
+        for (int threads : counts) {
+            long elapsed = 0;
+            long nodes = 0;
+            try (ParallelSearch search = new ParallelSearch(table, threads)) {
+                for (String fen : fens) {
+                    Game game = new Game();
+                    game.loadGameFromFen(fen);
+                    table.clear();
+                    long start = System.nanoTime();
+                    SearchResult result = search.search(game, SearchLimits.depth(depth));
+                    elapsed += System.nanoTime() - start;
+                    nodes += result.getNodes();
+                    if (threads == maxThreads) {
+                        System.err.println(fen + " -> " + Moves.toUci(result.getBestMove()) + " " + result.getScore());
+                    }
+                }
+            }
+            if (threads == 1) {
+                baseline = elapsed;
+            }
+            long nps = elapsed == 0 ? 0 : nodes * 1_000_000_000L / elapsed;
+            System.out.printf("%7d %12d %13d %12d %12d %8.2f%n", threads, elapsed / 1_000_000, nodes, nps,
+                    nps / threads, elapsed == 0 ? 0.0 : (double) baseline / elapsed);
+        }
+    }
+}
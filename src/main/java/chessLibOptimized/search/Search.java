@@ -0,0 +1,421 @@
+package chessLibOptimized.search;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Evaluation;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+
+// Iterative deepening principal variation search with quiescence, a shared transposition table,
+// null move pruning, late move reductions and TT/MVV-LVA/killer/history move ordering.
+//
+// A Search owns its board and buffers and is used by one thread at a time; it never touches the Game lock
+// beyond copying the position at the start.
+public class Search {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 128;
+
+    // [Piece.typeIndex(type)], only used to order captures
+    private static final int[] ORDER_VALUE = {1, 3, 3, 5, 9, 0};
+
+    private static final int TT_MOVE_SCORE = 1_000_000;
+    private static final int CAPTURE_SCORE = 100_000;
+    private static final int KILLER_SCORE = 90_000;
+
+    private final TranspositionTable table;
+    // helper threads of a parallel search with an odd id search one ply deeper than the main thread
+    private final int depthOffset;
+    private final Board board = new Board();
+
+    private final int[][] moves = new int[MAX_PLY][Moves.MAX_MOVES];
+    private final int[][] moveScores = new int[MAX_PLY][Moves.MAX_MOVES];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final int[][] killers = new int[MAX_PLY][2];
+    // [Color.index(side) * 4096 + from * 64 + to]
+    private final int[] history = new int[2 * 64 * 64];
+    // keys of the positions on the current path, for repetition detection
+    private final long[] keys = new long[MAX_PLY + 1];
+
+    private volatile boolean stopped;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+
+    public Search(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    Search(TranspositionTable table, int helperId) {
+        this.table = table;
+        this.depthOffset = helperId & 1;
+    }
+
+    public SearchResult search(Game game, SearchLimits limits) {
+        stopped = false;
+        game.copyBoardInto(board);
+        table.newSearch();
+        return run(limits);
+    }
+
+    public SearchResult search(Board position, SearchLimits limits) {
+        stopped = false;
+        board.copyFrom(position);
+        table.newSearch();
+        return run(limits);
+    }
+
+    // For the threads of a parallel search: the caller clears the stop flag before handing the search to another
+    // thread, so a stop() that arrives before the helper starts is not lost, and starts the table's new generation
+    // once for all of them.
+    SearchResult searchPrepared(Board position, SearchLimits limits) {
+        board.copyFrom(position);
+        return run(limits);
+    }
+
+    void clearStop() {
+        stopped = false;
+    }
+
+    // asks a running search to return as soon as possible with the last completed iteration
+    public void stop() {
+        stopped = true;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    private SearchResult run(SearchLimits limits) {
+        long start = System.nanoTime();
+        nodes = 0;
+        maxNodes = limits.getNodes() > 0 ? limits.getNodes() : Long.MAX_VALUE;
+        deadline = limits.getTimeMillis() > 0 ? start + limits.getTimeMillis() * 1_000_000L : Long.MAX_VALUE;
+        for (int[] killer : killers) {
+            killer[0] = 0;
+            killer[1] = 0;
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 2;
+        }
+
+        int rootCount = board.generateLegalMoves(moves[0], 0);
+        if (rootCount == 0) {
+            int score = board.isCheck(board.getSideToMove()) ? -MATE : 0;
+            return new SearchResult(Moves.NONE, score, 0, 0, elapsedMillis(start), new int[0]);
+        }
+
+        int bestMove = moves[0][0];
+        int bestScore = 0;
+        int completedDepth = 0;
+        int[] principalVariation = {bestMove};
+        int maxDepth = Math.min(Math.max(limits.getDepth(), 1), MAX_PLY - 1 - depthOffset);
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int score = negamax(depth + depthOffset, -INFINITY, INFINITY, 0);
+            if (stopped && completedDepth > 0) {
+                break;
+            }
+            if (pvLength[0] > 0) {
+                bestMove = pv[0][0];
+                principalVariation = new int[pvLength[0]];
+                System.arraycopy(pv[0], 0, principalVariation, 0, pvLength[0]);
+            }
+            bestScore = score;
+            completedDepth = depth + depthOffset;
+            if (stopped || Math.abs(score) >= MATE - depth) {
+                break;
+            }
+        }
+        return new SearchResult(bestMove, bestScore, completedDepth, nodes, elapsedMillis(start), principalVariation);
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if ((++nodes & 1023) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+
+        long key = board.hash();
+        keys[ply] = key;
+        if (ply > 0) {
+            if (isRepetition(ply)) {
+                return 0;
+            }
+            if (ply >= MAX_PLY - 1) {
+                return Evaluation.evaluate(board);
+            }
+            // mate distance pruning
+            alpha = Math.max(alpha, -MATE + ply);
+            beta = Math.min(beta, MATE - ply - 1);
+            if (alpha >= beta) {
+                return alpha;
+            }
+        }
+
+        int side = board.getSideToMove();
+        boolean inCheck = board.isCheck(side);
+        if (inCheck) {
+            ++depth;
+        }
+        if (depth <= 0) {
+            return quiescence(alpha, beta, ply);
+        }
+
+        boolean pvNode = beta - alpha > 1;
+        int ttMove = 0;
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            ttMove = TranspositionTable.move(entry);
+            if (!pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        if (!pvNode && !inCheck && depth >= 3 && hasPieces(side) && Evaluation.evaluate(board) >= beta) {
+            board.makeNullMove();
+            int score = -negamax(depth - 3, -beta, -beta + 1, ply + 1);
+            board.unmakeNullMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                return score >= MATE - MAX_PLY ? beta : score;
+            }
+        }
+
+        int[] list = moves[ply];
+        int[] scores = moveScores[ply];
+        int n = board.generateLegalMoves(list, 0);
+        if (n == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(list, scores, n, ttMove, ply, side);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < n; i++) {
+            int move = pickNext(list, scores, i, n);
+            boolean quiet = !Moves.isCapture(move) && !Moves.isPromotion(move);
+
+            board.makeMove(move);
+            boolean givesCheck = board.isCheck(board.getSideToMove());
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                int reduction = depth >= 3 && i >= 4 && quiet && !inCheck && !givesCheck ? 1 + (i >= 12 ? 1 : 0) : 0;
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if (score > alpha && (reduction > 0 || score < beta)) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            board.unmakeMove(move);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            rememberQuiet(move, ply, side, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    private int quiescence(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if ((++nodes & 1023) == 0) {
+            checkLimits();
+        }
+        if (stopped) {
+            return 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return Evaluation.evaluate(board);
+        }
+
+        int side = board.getSideToMove();
+        boolean inCheck = board.isCheck(side);
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluation.evaluate(board);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+        }
+
+        int[] list = moves[ply];
+        int[] scores = moveScores[ply];
+        int n = board.generateLegalMoves(list, 0);
+        if (n == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (!inCheck) {
+            // only captures and promotions outside of check
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (Moves.isCapture(list[i]) || Moves.isPromotion(list[i])) {
+                    list[kept++] = list[i];
+                }
+            }
+            n = kept;
+        }
+        scoreMoves(list, scores, n, 0, ply, side);
+
+        for (int i = 0; i < n; i++) {
+            int move = pickNext(list, scores, i, n);
+            // captures that lose material cannot raise a stand pat score
+            if (!inCheck && !board.seeGreaterOrEqual(move, 0)) {
+                continue;
+            }
+            board.makeMove(move);
+            int score = -quiescence(-beta, -alpha, ply + 1);
+            board.unmakeMove(move);
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private void scoreMoves(int[] list, int[] scores, int n, int ttMove, int ply, int side) {
+        int[] killer = killers[ply];
+        int historyBase = Color.index(side) * 4096;
+        for (int i = 0; i < n; i++) {
+            int move = list[i];
+            if (move == ttMove) {
+                scores[i] = TT_MOVE_SCORE;
+            } else if (Moves.isCapture(move) || Moves.isPromotion(move)) {
+                int victim = Moves.isCapture(move) ? ORDER_VALUE[Piece.typeIndex(Moves.captured(move))] : 0;
+                int promotion = Moves.isPromotion(move) ? ORDER_VALUE[Piece.typeIndex(Moves.promotion(move))] : 0;
+                scores[i] = CAPTURE_SCORE + (victim + promotion) * 16 - ORDER_VALUE[Piece.typeIndex(Moves.piece(move))];
+            } else if (move == killer[0]) {
+                scores[i] = KILLER_SCORE;
+            } else if (move == killer[1]) {
+                scores[i] = KILLER_SCORE - 1;
+            } else {
+                scores[i] = history[historyBase + Moves.from(move) * 64 + Moves.to(move)];
+            }
+        }
+    }
+
+    // selection sort step: swaps the best remaining move into position i and returns it
+    private static int pickNext(int[] list, int[] scores, int i, int n) {
+        int best = i;
+        for (int j = i + 1; j < n; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    private void rememberQuiet(int move, int ply, int side, int depth) {
+        int[] killer = killers[ply];
+        if (killer[0] != move) {
+            killer[1] = killer[0];
+            killer[0] = move;
+        }
+        int index = Color.index(side) * 4096 + Moves.from(move) * 64 + Moves.to(move);
+        history[index] += depth * depth;
+        if (history[index] > KILLER_SCORE / 2) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][0] = move;
+        int childLength = ply + 1 < pvLength.length ? pvLength[ply + 1] : 0;
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, childLength);
+        pvLength[ply] = childLength + 1;
+    }
+
+    // the same position earlier on the path with the same side to move
+    private boolean isRepetition(int ply) {
+        long key = keys[ply];
+        for (int i = ply - 2; i >= 0; i -= 2) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPieces(int side) {
+        return (board.pieces(side) & ~board.pieces(side, Piece.PAWN) & ~board.pieces(side, Piece.KING)) != 0;
+    }
+
+    private void checkLimits() {
+        if (nodes >= maxNodes || System.nanoTime() >= deadline) {
+            stopped = true;
+        }
+    }
+
+    // mate scores are stored relative to the node, not the root
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        } else if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        } else if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000L;
+    }
+}
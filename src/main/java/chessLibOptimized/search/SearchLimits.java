@@ -0,0 +1,23 @@
+package chessLibOptimized.search;
+
+import lombok.Value;
+
+// Budget for one search. A zero time or node limit means no limit of that kind.
+@Value
+public class SearchLimits {
+    int depth;
+    long timeMillis;
+    long nodes;
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0L, 0L);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits(Search.MAX_PLY - 1, timeMillis, 0L);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(Search.MAX_PLY - 1, 0L, nodes);
+    }
+}
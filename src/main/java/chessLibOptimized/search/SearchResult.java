@@ -0,0 +1,22 @@
+package chessLibOptimized.search;
+
+import lombok.Value;
+
+// Outcome of a search. Moves are packed as in Moves; bestMove is Moves.NONE when the side to move has no moves.
+@Value
+public class SearchResult {
+    int bestMove;
+    int score;
+    int depth;
+    long nodes;
+    long timeMillis;
+    int[] principalVariation;
+
+    public long getNodesPerSecond() {
+        return timeMillis == 0 ? nodes * 1000 : nodes * 1000 / timeMillis;
+    }
+
+    public boolean isMateScore() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+}
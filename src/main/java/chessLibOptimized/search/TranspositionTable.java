@@ -0,0 +1,178 @@
+package chessLibOptimized.search;
+
+import java.util.Arrays;
+
+// Fixed-size hash table of search results shared by any number of threads without locking.
+//
+// Every entry is two longs, (key ^ data, data). A reader accepts an entry only if xoring the two words
+// gives back its key, so an entry torn by two threads writing at once reads as a miss instead of as
+// someone else's result (Hyatt's lockless hashing). Four entries make a 64-byte bucket.
+//
+// The data word packs
+//   bits  0-23  best move, packed as in Moves
+//   bits 24-39  score
+//   bits 40-47  depth
+//   bits 48-49  bound
+//   bits 50-55  age of the search that stored it
+public class TranspositionTable {
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    // probe result for a miss, never a valid data word because stored words always carry a bound
+    public static final long MISS = 0L;
+
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int AGE_MASK = 63;
+
+    public enum ReplacementPolicy {
+        // the new result always evicts the shallowest entry of the bucket
+        ALWAYS,
+        // deeper results are kept, a shallower one only replaces an entry from an earlier search
+        DEPTH_PREFERRED,
+        // like DEPTH_PREFERRED but every search of age difference counts as eight plies of depth
+        AGED_DEPTH
+    }
+
+    private final long[] table;
+    private final int bucketMask;
+    private final ReplacementPolicy policy;
+    private volatile int age;
+
+    public TranspositionTable(int megabytes) {
+        this(megabytes, ReplacementPolicy.AGED_DEPTH);
+    }
+
+    public TranspositionTable(int megabytes, ReplacementPolicy policy) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("transposition table needs at least 1 MB, got " + megabytes);
+        }
+        long buckets = Long.highestOneBit(megabytes * 1024L * 1024L / (BUCKET_ENTRIES * 16));
+        if (buckets * BUCKET_ENTRIES * 2 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("transposition table of " + megabytes + " MB is too large");
+        }
+        this.table = new long[(int) buckets * BUCKET_ENTRIES * 2];
+        this.bucketMask = (int) buckets - 1;
+        this.policy = policy;
+    }
+
+    // the data word stored for key, or MISS
+    public long probe(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + BUCKET_ENTRIES * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != MISS) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int currentAge = age;
+        int base = bucket(key);
+        int victim = base;
+        int victimPriority = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_ENTRIES * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key || data == MISS) {
+                // same position: keep the old best move when the new result has none
+                if (move == 0 && data != MISS) {
+                    move = move(data);
+                }
+                victim = i;
+                break;
+            }
+            int priority = priority(data, currentAge);
+            if (priority < victimPriority) {
+                victimPriority = priority;
+                victim = i;
+            }
+        }
+
+        long old = table[victim + 1];
+        if (old != MISS && (table[victim] ^ old) != key && !shouldReplace(old, depth, currentAge)) {
+            return;
+        }
+        long data = pack(move, score, depth, bound, currentAge);
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    // Starts a new search generation, so entries from earlier searches become preferred victims. Called once per
+    // search, before any thread starts: the increment is not atomic and must not race with itself.
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    // permille of the first thousand entries used by the current search
+    public int hashfull() {
+        int used = 0;
+        int sampled = Math.min(1000, table.length / 2);
+        int currentAge = age;
+        for (int i = 0; i < sampled; i++) {
+            long data = table[i * 2 + 1];
+            if (data != MISS && age(data) == currentAge) {
+                ++used;
+            }
+        }
+        return sampled == 0 ? 0 : used * 1000 / sampled;
+    }
+
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 24);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 40) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 48) & 3);
+    }
+
+    static int age(long data) {
+        return (int) ((data >>> 50) & AGE_MASK);
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFFFL)
+                | (score & 0xFFFFL) << 24
+                | (long) Math.max(0, Math.min(depth, 255)) << 40
+                | (long) bound << 48
+                | (long) age << 50;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_ENTRIES * 2;
+    }
+
+    private int priority(long data, int currentAge) {
+        int staleness = (currentAge - age(data)) & AGE_MASK;
+        return switch (policy) {
+            case ALWAYS, DEPTH_PREFERRED -> depth(data) - (staleness > 0 ? 256 : 0);
+            case AGED_DEPTH -> depth(data) - 8 * staleness;
+        };
+    }
+
+    private boolean shouldReplace(long old, int depth, int currentAge) {
+        return switch (policy) {
+            case ALWAYS -> true;
+            case DEPTH_PREFERRED -> depth >= depth(old) || age(old) != currentAge;
+            case AGED_DEPTH -> depth >= priority(old, currentAge);
+        };
+    }
+}
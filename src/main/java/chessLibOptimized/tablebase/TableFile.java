@@ -0,0 +1,725 @@
+package chessLibOptimized.tablebase;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// One Syzygy file, .rtbw or .rtbz, for one material signature. The name and the material are known from the
+// directory scan; the file itself is only mapped, and its headers parsed, the first time a position needs it, and
+// Tablebase drops the mapping again when too many files are mapped.
+//
+// The indexing follows the reference prober: pieces are split into groups, the leading group (kings and unique
+// pieces, or the leading pawns) is reduced by symmetry and the other groups are encoded as combinations of the
+// squares left, and the resulting index is looked up in blocks of Huffman coded, pair compressed values.
+final class TableFile {
+    static final int[] WDL_MAGIC = {0x71, 0xE8, 0x23, 0x5D};
+    static final int[] DTZ_MAGIC = {0xD7, 0x66, 0x0C, 0xA5};
+
+    // probe states, kept in Tablebase.Scratch.state
+    static final int FAIL = 0;
+    static final int OK = 1;
+    static final int CHANGE_STM = -1;
+    static final int ZEROING_BEST_MOVE = 2;
+
+    // PairsData.flags
+    private static final int STM = 1;
+    private static final int MAPPED = 2;
+    private static final int WIN_PLIES = 4;
+    private static final int LOSS_PLIES = 8;
+    private static final int WIDE = 16;
+    private static final int SINGLE_VALUE = 128;
+
+    // files over 2GB are mapped in segments, which overlap so no read of up to 8 bytes crosses two of them
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+    private static final int SEGMENT_OVERLAP = 8;
+
+    // Syzygy piece codes by Piece.typeIndex: P 1, N 2, B 3, R 4, Q 5, K 6, black pieces + 8
+    private static final int[] TB_TYPE = {1, 3, 2, 4, 5, 6};
+
+    private static final int[] MAP_PAWNS = new int[64];
+    private static final int[] MAP_B1H1H7 = new int[64];
+    private static final int[] MAP_A1D1D4 = new int[64];
+    private static final int[][] MAP_KK = new int[10][64];
+    private static final int[][] BINOMIAL = new int[6][64];
+    private static final int[][] LEAD_PAWN_IDX = new int[6][64];
+    private static final int[][] LEAD_PAWNS_SIZE = new int[6][4];
+
+    static {
+        int code = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (offA1H8(sq) < 0) {
+                MAP_B1H1H7[sq] = code++;
+            }
+        }
+
+        // below the diagonal first, then the a1-d4 diagonal itself
+        code = 0;
+        for (int sq = 0; sq <= 27; sq++) {
+            if (offA1H8(sq) < 0 && (sq & 7) <= 3) {
+                MAP_A1D1D4[sq] = code++;
+            }
+        }
+        for (int sq = 0; sq <= 27; sq++) {
+            if (offA1H8(sq) == 0 && (sq & 7) <= 3) {
+                MAP_A1D1D4[sq] = code++;
+            }
+        }
+
+        // the 462 legal placements of two kings with the first one in the a1-d1-d4 triangle, both on the diagonal last
+        code = 0;
+        int[] diagonalIdx = new int[64];
+        int[] diagonalSq = new int[64];
+        int diagonal = 0;
+        for (int idx = 0; idx < 10; idx++) {
+            for (int s1 = 0; s1 <= 27; s1++) {
+                if (MAP_A1D1D4[s1] != idx || (idx == 0 && s1 != 1)) {
+                    continue;
+                }
+                for (int s2 = 0; s2 < 64; s2++) {
+                    if (Math.abs((s1 & 7) - (s2 & 7)) <= 1 && Math.abs((s1 >>> 3) - (s2 >>> 3)) <= 1) {
+                        continue;
+                    } else if (offA1H8(s1) == 0 && offA1H8(s2) > 0) {
+                        continue;
+                    } else if (offA1H8(s1) == 0 && offA1H8(s2) == 0) {
+                        diagonalIdx[diagonal] = idx;
+                        diagonalSq[diagonal++] = s2;
+                    } else {
+                        MAP_KK[idx][s2] = code++;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < diagonal; i++) {
+            MAP_KK[diagonalIdx[i]][diagonalSq[i]] = code++;
+        }
+
+        BINOMIAL[0][0] = 1;
+        for (int n = 1; n < 64; n++) {
+            for (int k = 0; k < 6 && k <= n; k++) {
+                BINOMIAL[k][n] = (k > 0 ? BINOMIAL[k - 1][n - 1] : 0) + (k < n ? BINOMIAL[k][n - 1] : 0);
+            }
+        }
+
+        // a2-h7 numbered from the edges inwards and upwards: the leading pawn is the one with the highest number
+        int available = 47;
+        for (int leadPawns = 1; leadPawns <= 5; leadPawns++) {
+            for (int file = 0; file < 4; file++) {
+                int idx = 0;
+                for (int rank = 1; rank <= 6; rank++) {
+                    int sq = rank * 8 + file;
+                    if (leadPawns == 1) {
+                        MAP_PAWNS[sq] = available--;
+                        MAP_PAWNS[sq ^ 7] = available--;
+                    }
+                    LEAD_PAWN_IDX[leadPawns][sq] = idx;
+                    idx += BINOMIAL[leadPawns - 1][MAP_PAWNS[sq]];
+                }
+                LEAD_PAWNS_SIZE[leadPawns][file] = idx;
+            }
+        }
+    }
+
+    final Path path;
+    final boolean dtz;
+    // material keys with the first side of the name as white and as black, equal for symmetric material
+    final long key;
+    final long key2;
+    final int pieceCount;
+    final boolean hasPawns;
+    final boolean hasUniquePieces;
+    // pawns of the color that does not lead: the leading one is the side with fewer pawns, but some
+    final int otherPawnCount;
+
+    // guarded by the Tablebase lock for writes; readers may keep using a mapping after it has been dropped
+    volatile Mapping mapping;
+    // set when the file could not be mapped or is not a Syzygy file, it is never tried again
+    boolean broken;
+    // racy access stamp for the LRU
+    long lastUsed;
+
+    // counts are [Color.index][Piece.typeIndex] of the material as named, first side white
+    TableFile(Path path, boolean dtz, int[][] counts) {
+        this.path = path;
+        this.dtz = dtz;
+        this.key = Tablebase.materialKey(counts, false);
+        this.key2 = Tablebase.materialKey(counts, true);
+        int pieces = 0;
+        boolean unique = false;
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++) {
+                pieces += counts[color][type];
+                if (type < 5 && counts[color][type] == 1) {
+                    unique = true;
+                }
+            }
+        }
+        this.pieceCount = pieces;
+        this.hasPawns = counts[0][0] + counts[1][0] > 0;
+        this.hasUniquePieces = unique;
+        boolean whiteLeads = counts[1][0] == 0 || (counts[0][0] > 0 && counts[1][0] >= counts[0][0]);
+        this.otherPawnCount = counts[whiteLeads ? 1 : 0][0];
+    }
+
+    // Maps the file and parses its headers; an IOException or IllegalArgumentException means the file is unusable.
+    Mapping map() throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 16) {
+                throw new IllegalArgumentException(path + " is too short for a tablebase");
+            }
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size - 1) >>> SEGMENT_BITS) + 1];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                long length = Math.min(size - start, (1L << SEGMENT_BITS) + SEGMENT_OVERLAP);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            Mapping m = new Mapping(segments, dtz ? 1 : 2);
+            int[] magic = dtz ? DTZ_MAGIC : WDL_MAGIC;
+            for (int i = 0; i < 4; i++) {
+                if (m.u8(i) != magic[i]) {
+                    throw new IllegalArgumentException(path + " is not a Syzygy " + (dtz ? "DTZ" : "WDL") + " file");
+                }
+            }
+            parse(m);
+            return m;
+        }
+    }
+
+    private void parse(Mapping m) {
+        long p = 4;
+        int header = m.u8(p++);
+        if (((header & 2) != 0) != hasPawns || ((header & 1) != 0) != (key != key2)) {
+            throw new IllegalArgumentException(path + " does not hold the material of its name");
+        }
+        int sides = !dtz && key != key2 ? 2 : 1;
+        int maxFile = hasPawns ? 3 : 0;
+        boolean pp = hasPawns && otherPawnCount > 0;
+
+        for (int f = 0; f <= maxFile; f++) {
+            for (int i = 0; i < sides; i++) {
+                m.items[i][f] = new PairsData();
+            }
+            int b0 = m.u8(p);
+            int b1 = pp ? m.u8(p + 1) : 0;
+            int[][] order = {{b0 & 0xF, pp ? b1 & 0xF : 0xF}, {b0 >>> 4, pp ? b1 >>> 4 : 0xF}};
+            p += pp ? 2 : 1;
+            for (int k = 0; k < pieceCount; k++, p++) {
+                int b = m.u8(p);
+                for (int i = 0; i < sides; i++) {
+                    m.items[i][f].pieces[k] = i == 1 ? b >>> 4 : b & 0xF;
+                }
+            }
+            for (int i = 0; i < sides; i++) {
+                setGroups(m.items[i][f], order[i], f);
+            }
+        }
+        p += p & 1;
+
+        for (int f = 0; f <= maxFile; f++) {
+            for (int i = 0; i < sides; i++) {
+                p = setSizes(m, m.items[i][f], p);
+            }
+        }
+        if (dtz) {
+            p = setDtzMap(m, p, maxFile);
+        }
+        for (int f = 0; f <= maxFile; f++) {
+            for (int i = 0; i < sides; i++) {
+                PairsData d = m.items[i][f];
+                d.sparseIndex = p;
+                p += d.sparseIndexSize * 6;
+            }
+        }
+        for (int f = 0; f <= maxFile; f++) {
+            for (int i = 0; i < sides; i++) {
+                PairsData d = m.items[i][f];
+                d.blockLength = p;
+                p += d.blockLengthSize * 2;
+            }
+        }
+        for (int f = 0; f <= maxFile; f++) {
+            for (int i = 0; i < sides; i++) {
+                PairsData d = m.items[i][f];
+                p = (p + 0x3F) & ~0x3FL;
+                d.data = p;
+                p += d.numBlocks * d.blockSize;
+            }
+        }
+        if (p > m.size) {
+            throw new IllegalArgumentException(path + " is truncated");
+        }
+    }
+
+    private void setGroups(PairsData d, int[] order, int file) {
+        int n = 0;
+        int firstLen = hasPawns ? 0 : hasUniquePieces ? 3 : 2;
+        d.groupLen[n] = 1;
+        // the order of pieces in the file defines the groups, KRvKN gives (3, 1)
+        for (int i = 1; i < pieceCount; i++) {
+            if (--firstLen > 0 || d.pieces[i] == d.pieces[i - 1]) {
+                d.groupLen[n]++;
+            } else {
+                d.groupLen[++n] = 1;
+            }
+        }
+        d.groupLen[++n] = 0;
+
+        // the groups are encoded in a per table order, with the leading group at order[0] and the other side's pawns
+        // at order[1]: index = g1 * N(g2) * N(g3) + g2 * N(g3) + g3
+        boolean pp = hasPawns && otherPawnCount > 0;
+        int next = pp ? 2 : 1;
+        int freeSquares = 64 - d.groupLen[0] - (pp ? d.groupLen[1] : 0);
+        long idx = 1;
+        for (int k = 0; next < n || k == order[0] || k == order[1]; k++) {
+            if (k == order[0]) {
+                d.groupIdx[0] = idx;
+                idx *= hasPawns ? LEAD_PAWNS_SIZE[d.groupLen[0]][file] : hasUniquePieces ? 31332 : 462;
+            } else if (k == order[1]) {
+                d.groupIdx[1] = idx;
+                idx *= BINOMIAL[d.groupLen[1]][48 - d.groupLen[0]];
+            } else {
+                d.groupIdx[next] = idx;
+                idx *= BINOMIAL[d.groupLen[next]][freeSquares];
+                freeSquares -= d.groupLen[next++];
+            }
+        }
+        d.groupIdx[n] = idx;
+    }
+
+    private static long setSizes(Mapping m, PairsData d, long p) {
+        d.flags = m.u8(p++);
+        if ((d.flags & SINGLE_VALUE) != 0) {
+            d.minSymLen = m.u8(p++);
+            return p;
+        }
+
+        int groups = 0;
+        while (d.groupLen[groups] != 0) {
+            groups++;
+        }
+        long tbSize = d.groupIdx[groups];
+
+        d.blockSize = 1L << m.u8(p++);
+        d.span = 1L << m.u8(p++);
+        d.sparseIndexSize = (tbSize + d.span - 1) / d.span;
+        int padding = m.u8(p++);
+        d.numBlocks = m.u32(p);
+        p += 4;
+        d.blockLengthSize = d.numBlocks + padding;
+        d.maxSymLen = m.u8(p++);
+        d.minSymLen = m.u8(p++);
+
+        // canonical Huffman code: longer symbols have lower values, base64[l] is the lowest symbol of length
+        // l + minSymLen left aligned in 64 bits
+        int lengths = d.maxSymLen - d.minSymLen + 1;
+        if (lengths < 1 || lengths > 64) {
+            throw new IllegalArgumentException("bad symbol lengths " + d.minSymLen + ".." + d.maxSymLen);
+        }
+        d.lowestSym = new int[lengths];
+        d.base64 = new long[lengths];
+        for (int i = 0; i < lengths; i++) {
+            d.lowestSym[i] = m.u16(p + 2L * i);
+        }
+        for (int i = lengths - 2; i >= 0; i--) {
+            d.base64[i] = (d.base64[i + 1] + d.lowestSym[i] - d.lowestSym[i + 1]) / 2;
+        }
+        for (int i = 0; i < lengths; i++) {
+            d.base64[i] <<= 64 - i - d.minSymLen;
+        }
+        p += 2L * lengths;
+
+        // recursive pairing: every symbol stands for a leaf value or for a left and a right symbol
+        int symbols = m.u16(p);
+        p += 2;
+        d.left = new int[symbols];
+        d.right = new int[symbols];
+        d.symlen = new int[symbols];
+        for (int sym = 0; sym < symbols; sym++) {
+            long lr = p + 3L * sym;
+            int b1 = m.u8(lr + 1);
+            d.left[sym] = (b1 & 0xF) << 8 | m.u8(lr);
+            d.right[sym] = m.u8(lr + 2) << 4 | b1 >>> 4;
+        }
+        boolean[] visited = new boolean[symbols];
+        for (int sym = 0; sym < symbols; sym++) {
+            if (!visited[sym]) {
+                d.symlen[sym] = symlen(d, sym, visited);
+            }
+        }
+        return p + 3L * symbols + (symbols & 1);
+    }
+
+    // number of values, minus one, a symbol expands into
+    private static int symlen(PairsData d, int sym, boolean[] visited) {
+        visited[sym] = true;
+        int right = d.right[sym];
+        if (right == 0xFFF) {
+            return 0;
+        }
+        int left = d.left[sym];
+        if (!visited[left]) {
+            d.symlen[left] = symlen(d, left, visited);
+        }
+        if (!visited[right]) {
+            d.symlen[right] = symlen(d, right, visited);
+        }
+        return d.symlen[left] + d.symlen[right] + 1;
+    }
+
+    // DTZ values are stored as their rank by frequency, per WDL outcome; the map turns them back into distances
+    private static long setDtzMap(Mapping m, long p, int maxFile) {
+        m.map = p;
+        for (int f = 0; f <= maxFile; f++) {
+            PairsData d = m.items[0][f];
+            if ((d.flags & MAPPED) == 0) {
+                continue;
+            }
+            if ((d.flags & WIDE) != 0) {
+                p += p & 1;
+                for (int i = 0; i < 4; i++) {
+                    d.mapIdx[i] = (int) ((p - m.map) >> 1) + 1;
+                    p += 2L * m.u16(p) + 2;
+                }
+            } else {
+                for (int i = 0; i < 4; i++) {
+                    d.mapIdx[i] = (int) (p - m.map) + 1;
+                    p += m.u8(p) + 1;
+                }
+            }
+        }
+        return p + (p & 1);
+    }
+
+    // Value of board in this table: a WDL score, or for DTZ the distance in plies given the position's wdl. The
+    // caller has checked that the board's material is this table's.
+    int probe(Mapping m, Board board, long materialKey, int wdl, Tablebase.Scratch s) {
+        int[] squares = s.squares;
+        int[] pieces = s.pieces;
+        boolean blackToMove = board.getSideToMove() == Color.BLACK;
+        // symmetric material is only stored with white to move, and a table is stored with its first side white,
+        // so the other cases are probed with colors swapped and the board flipped vertically
+        boolean flip = (key == key2 && blackToMove) || materialKey != key;
+        int flipColor = flip ? 8 : 0;
+        int flipSquares = flip ? 56 : 0;
+        int stm = (flip ? 1 : 0) ^ (blackToMove ? 1 : 0);
+        int size = 0;
+        int leadPawnCnt = 0;
+        long leadPawns = 0L;
+        int tbFile = 0;
+
+        // tables with pawns are split by the file of the leading pawn, mirrored into a-d
+        if (hasPawns) {
+            int pc = m.items[0][0].pieces[0] ^ flipColor;
+            long b = leadPawns = board.pieces((pc & 8) == 0 ? Color.WHITE : Color.BLACK, Piece.PAWN);
+            do {
+                squares[size++] = Long.numberOfTrailingZeros(b) ^ flipSquares;
+                b &= b - 1;
+            } while (b != 0);
+            leadPawnCnt = size;
+            int lead = 0;
+            for (int i = 1; i < leadPawnCnt; i++) {
+                if (MAP_PAWNS[squares[i]] > MAP_PAWNS[squares[lead]]) {
+                    lead = i;
+                }
+            }
+            swap(squares, 0, lead);
+            tbFile = squares[0] & 7;
+            if (tbFile > 3) {
+                tbFile = (squares[0] ^ 7) & 7;
+            }
+        }
+
+        // DTZ tables hold one side to move only
+        if (dtz && (m.get(0, tbFile).flags & STM) != stm && !(key == key2 && !hasPawns)) {
+            s.state = CHANGE_STM;
+            return 0;
+        }
+
+        long b = board.occupied() ^ leadPawns;
+        do {
+            int sq = Long.numberOfTrailingZeros(b);
+            b &= b - 1;
+            int piece = board.pieceAt(sq);
+            squares[size] = sq ^ flipSquares;
+            pieces[size++] = (TB_TYPE[Piece.typeIndex(Piece.getPieceType(piece))]
+                    | (Piece.getPieceColor(piece) == Color.BLACK ? 8 : 0)) ^ flipColor;
+        } while (b != 0);
+
+        PairsData d = m.get(stm, tbFile);
+
+        // put the pieces in the order of the table
+        for (int i = leadPawnCnt; i < size - 1; i++) {
+            for (int j = i + 1; j < size; j++) {
+                if (d.pieces[i] == pieces[j]) {
+                    swap(pieces, i, j);
+                    swap(squares, i, j);
+                    break;
+                }
+            }
+        }
+
+        if ((squares[0] & 7) > 3) {
+            for (int i = 0; i < size; i++) {
+                squares[i] ^= 7;
+            }
+        }
+
+        long idx;
+        if (hasPawns) {
+            idx = LEAD_PAWN_IDX[leadPawnCnt][squares[0]];
+            for (int i = 2; i < leadPawnCnt; i++) {
+                int sq = squares[i];
+                int j = i;
+                for (; j > 1 && MAP_PAWNS[squares[j - 1]] > MAP_PAWNS[sq]; j--) {
+                    squares[j] = squares[j - 1];
+                }
+                squares[j] = sq;
+            }
+            for (int i = 1; i < leadPawnCnt; i++) {
+                idx += BINOMIAL[i][MAP_PAWNS[squares[i]]];
+            }
+        } else {
+            // leading piece into the a1-d1-d4 triangle, and the first one off the diagonal below it
+            if ((squares[0] >>> 3) > 3) {
+                for (int i = 0; i < size; i++) {
+                    squares[i] ^= 56;
+                }
+            }
+            for (int i = 0; i < d.groupLen[0]; i++) {
+                int off = offA1H8(squares[i]);
+                if (off == 0) {
+                    continue;
+                }
+                if (off > 0) {
+                    for (int j = i; j < size; j++) {
+                        squares[j] = ((squares[j] >>> 3) | (squares[j] << 3)) & 63;
+                    }
+                }
+                break;
+            }
+
+            if (hasUniquePieces) {
+                int s0 = squares[0];
+                int s1 = squares[1];
+                int s2 = squares[2];
+                int adjust1 = s1 > s0 ? 1 : 0;
+                int adjust2 = (s2 > s0 ? 1 : 0) + (s2 > s1 ? 1 : 0);
+                if (offA1H8(s0) != 0) {
+                    idx = ((long) MAP_A1D1D4[s0] * 63 + (s1 - adjust1)) * 62 + s2 - adjust2;
+                } else if (offA1H8(s1) != 0) {
+                    idx = (6 * 63 + (s0 >>> 3) * 28 + MAP_B1H1H7[s1]) * 62L + s2 - adjust2;
+                } else if (offA1H8(s2) != 0) {
+                    idx = 6 * 63 * 62 + 4 * 28 * 62 + (s0 >>> 3) * 7 * 28 + ((s1 >>> 3) - adjust1) * 28
+                            + MAP_B1H1H7[s2];
+                } else {
+                    idx = 6 * 63 * 62 + 4 * 28 * 62 + 4 * 7 * 28 + (s0 >>> 3) * 7 * 6 + ((s1 >>> 3) - adjust1) * 6
+                            + ((s2 >>> 3) - adjust2);
+                }
+            } else {
+                idx = MAP_KK[MAP_A1D1D4[squares[0]]][squares[1]];
+            }
+        }
+
+        // the other groups, each as a combination of the squares the groups before it leave free
+        idx *= d.groupIdx[0];
+        int groupStart = d.groupLen[0];
+        boolean remainingPawns = hasPawns && otherPawnCount > 0;
+        for (int next = 1; d.groupLen[next] != 0; next++) {
+            int len = d.groupLen[next];
+            for (int i = groupStart + 1; i < groupStart + len; i++) {
+                int sq = squares[i];
+                int j = i;
+                for (; j > groupStart && squares[j - 1] > sq; j--) {
+                    squares[j] = squares[j - 1];
+                }
+                squares[j] = sq;
+            }
+            long n = 0;
+            for (int i = 0; i < len; i++) {
+                int sq = squares[groupStart + i];
+                int adjust = 0;
+                for (int j = 0; j < groupStart; j++) {
+                    if (sq > squares[j]) {
+                        adjust++;
+                    }
+                }
+                n += BINOMIAL[i + 1][sq - adjust - (remainingPawns ? 8 : 0)];
+            }
+            remainingPawns = false;
+            idx += n * d.groupIdx[next];
+            groupStart += len;
+        }
+
+        int value = decompress(m, d, idx);
+        return dtz ? mapDtz(m, tbFile, value, wdl) : value - 2;
+    }
+
+    private static int mapDtz(Mapping m, int tbFile, int value, int wdl) {
+        PairsData d = m.get(0, tbFile);
+        // map_idx is ordered win, loss, cursed win, blessed loss
+        int slot = wdl == Tablebase.WIN || wdl == Tablebase.DRAW ? 0
+                : wdl == Tablebase.LOSS ? 1
+                : wdl == Tablebase.CURSED_WIN ? 2 : 3;
+        if ((d.flags & MAPPED) != 0) {
+            value = (d.flags & WIDE) != 0
+                    ? m.u16(m.map + 2L * (d.mapIdx[slot] + value))
+                    : m.u8(m.map + d.mapIdx[slot] + value);
+        }
+        // distances are stored in moves unless the flags say plies, cursed and blessed ones always in moves
+        if ((wdl == Tablebase.WIN && (d.flags & WIN_PLIES) == 0)
+                || (wdl == Tablebase.LOSS && (d.flags & LOSS_PLIES) == 0)
+                || wdl == Tablebase.CURSED_WIN
+                || wdl == Tablebase.BLESSED_LOSS) {
+            value *= 2;
+        }
+        return value + 1;
+    }
+
+    // the value at idx: find its block through the sparse index, then walk the block's symbols
+    private static int decompress(Mapping m, PairsData d, long idx) {
+        if ((d.flags & SINGLE_VALUE) != 0) {
+            return d.minSymLen;
+        }
+
+        // sparse index entry k points at the value with index k * span + span / 2
+        long k = idx / d.span;
+        long entry = d.sparseIndex + 6 * k;
+        long block = m.u32(entry);
+        int offset = m.u16(entry + 4);
+        offset += (int) (idx % d.span - d.span / 2);
+
+        while (offset < 0) {
+            offset += m.u16(d.blockLength + 2 * --block) + 1;
+        }
+        int length;
+        while (offset > (length = m.u16(d.blockLength + 2 * block))) {
+            offset -= length + 1;
+            block++;
+        }
+
+        long ptr = d.data + block * d.blockSize;
+        long buf64 = m.u64be(ptr);
+        ptr += 8;
+        int buf64Size = 64;
+        int sym;
+        while (true) {
+            int len = 0;
+            while (Long.compareUnsigned(buf64, d.base64[len]) < 0) {
+                len++;
+            }
+            sym = (int) ((buf64 - d.base64[len]) >>> (64 - len - d.minSymLen)) + d.lowestSym[len];
+            if (offset < d.symlen[sym] + 1) {
+                break;
+            }
+            offset -= d.symlen[sym] + 1;
+            len += d.minSymLen;
+            buf64 <<= len;
+            buf64Size -= len;
+            if (buf64Size <= 32) {
+                buf64Size += 32;
+                buf64 |= m.u32be(ptr) << (64 - buf64Size);
+                ptr += 4;
+            }
+        }
+
+        // the symbol stands for symlen + 1 values, descend the pairs to the one at offset
+        while (d.symlen[sym] != 0) {
+            int left = d.left[sym];
+            if (offset < d.symlen[left] + 1) {
+                sym = left;
+            } else {
+                offset -= d.symlen[left] + 1;
+                sym = d.right[sym];
+            }
+        }
+        return d.left[sym];
+    }
+
+    private static int offA1H8(int sq) {
+        return (sq >>> 3) - (sq & 7);
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    // a mapped file with its parsed headers, immutable once published
+    static final class Mapping {
+        final ByteBuffer[] segments;
+        final long size;
+        // [side to move][leading pawn file, or 0 without pawns]
+        final PairsData[][] items;
+        // start of the DTZ value map
+        long map;
+
+        Mapping(ByteBuffer[] segments, int sides) {
+            this.segments = segments;
+            long total = 0;
+            for (int i = 0; i < segments.length; i++) {
+                total = ((long) i << SEGMENT_BITS) + segments[i].capacity();
+            }
+            this.size = total;
+            this.items = new PairsData[sides][4];
+        }
+
+        PairsData get(int stm, int file) {
+            return items[stm % items.length][file];
+        }
+
+        int u8(long offset) {
+            return segments[(int) (offset >>> SEGMENT_BITS)].get((int) (offset & SEGMENT_MASK)) & 0xFF;
+        }
+
+        int u16(long offset) {
+            return segments[(int) (offset >>> SEGMENT_BITS)].getShort((int) (offset & SEGMENT_MASK)) & 0xFFFF;
+        }
+
+        long u32(long offset) {
+            return segments[(int) (offset >>> SEGMENT_BITS)].getInt((int) (offset & SEGMENT_MASK)) & 0xFFFFFFFFL;
+        }
+
+        long u32be(long offset) {
+            return Integer.reverseBytes(segments[(int) (offset >>> SEGMENT_BITS)].getInt((int) (offset & SEGMENT_MASK)))
+                    & 0xFFFFFFFFL;
+        }
+
+        long u64be(long offset) {
+            return Long.reverseBytes(segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & SEGMENT_MASK)));
+        }
+    }
+
+    // indexing and decoding data of one sub-table: one per side to move and leading pawn file
+    static final class PairsData {
+        int flags;
+        int maxSymLen;
+        // also the value of single valued tables
+        int minSymLen;
+        long numBlocks;
+        long blockSize;
+        long span;
+        long sparseIndex;
+        long sparseIndexSize;
+        long blockLength;
+        long blockLengthSize;
+        long data;
+        int[] lowestSym;
+        long[] base64;
+        int[] left;
+        int[] right;
+        int[] symlen;
+        final int[] pieces = new int[7];
+        final long[] groupIdx = new long[8];
+        final int[] groupLen = new int[8];
+        final int[] mapIdx = new int[4];
+    }
+}
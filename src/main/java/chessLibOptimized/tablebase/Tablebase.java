@@ -0,0 +1,428 @@
+package chessLibOptimized.tablebase;
+
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.GameSnapshot;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Syzygy endgame tablebases read straight from the .rtbw (win/draw/loss) and .rtbz (distance to zeroing) files of a
+// directory, shared by any number of threads.
+//
+// The directory is only listed when the tablebase is built; a file is memory mapped the first time a position needs
+// it, and at most maxMappedFiles stay mapped, the least recently probed one being dropped for a new one. A dropped
+// mapping is unmapped by the garbage collector once no probe holds it, so probes never see a closed file. Probing
+// allocates nothing after the first probe of each thread and each file: every thread works in its own scratch.
+//
+// Like the tables themselves, probes ignore the fifty move rule: CURSED_WIN and BLESSED_LOSS are the results that it
+// turns into draws, and a distance to zeroing plus the halfmove clock above 100 does the same.
+public class Tablebase {
+    public static final int LOSS = -2;
+    public static final int BLESSED_LOSS = -1;
+    public static final int DRAW = 0;
+    public static final int CURSED_WIN = 1;
+    public static final int WIN = 2;
+
+    // returned by probeWdl and probeDtz for positions the tables do not cover
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int MAX_PIECES = 7;
+    private static final String PIECES = "PBNRQK";
+
+    // open addressing on the material key of both colorings of every table, 0 marks a free slot
+    private final long[] keys;
+    private final TableFile[] wdlTables;
+    private final TableFile[] dtzTables;
+    private final int mask;
+    private final int tableCount;
+    private final int maxPieces;
+
+    private final int maxMappedFiles;
+    private final Object lock = new Object();
+    // guarded by lock
+    private final List<TableFile> mapped = new ArrayList<>();
+    // advanced racily by every probe, which only ever makes the LRU a little less exact
+    private long tick;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public Tablebase(Path directory, int maxMappedFiles) throws IOException {
+        if (maxMappedFiles < 1) {
+            throw new IllegalArgumentException("at least one file must stay mapped, got " + maxMappedFiles);
+        }
+        this.maxMappedFiles = maxMappedFiles;
+
+        List<TableFile> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.rtbw")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int[][] counts = parseMaterial(name.substring(0, name.length() - ".rtbw".length()));
+                if (counts != null) {
+                    found.add(new TableFile(file, false, counts));
+                }
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(found.size(), 1) * 4) * 2;
+        keys = new long[capacity];
+        wdlTables = new TableFile[capacity];
+        dtzTables = new TableFile[capacity];
+        mask = capacity - 1;
+        int pieces = 0;
+        for (TableFile wdl : found) {
+            String name = wdl.path.getFileName().toString();
+            Path dtzPath = wdl.path.resolveSibling(name.substring(0, name.length() - 1) + "z");
+            TableFile dtz = Files.isRegularFile(dtzPath)
+                    ? new TableFile(dtzPath, true, parseMaterial(name.substring(0, name.length() - 5)))
+                    : null;
+            insert(wdl.key, wdl, dtz);
+            insert(wdl.key2, wdl, dtz);
+            pieces = Math.max(pieces, wdl.pieceCount);
+        }
+        tableCount = found.size();
+        maxPieces = pieces;
+    }
+
+    // counts by [Color.index][Piece.typeIndex] of a name like KRPvKQ, null when it is not a table name
+    static int[][] parseMaterial(String name) {
+        int v = name.indexOf('v');
+        if (v < 0 || name.length() - 1 > MAX_PIECES) {
+            return null;
+        }
+        int[][] counts = new int[2][6];
+        for (int i = 0; i < name.length(); i++) {
+            if (i == v) {
+                continue;
+            }
+            int type = PIECES.indexOf(name.charAt(i));
+            if (type < 0) {
+                return null;
+            }
+            counts[i < v ? 0 : 1][type]++;
+        }
+        return counts[0][5] == 1 && counts[1][5] == 1 ? counts : null;
+    }
+
+    static long materialKey(int[][] counts, boolean swapColors) {
+        long key = 0L;
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++) {
+                key |= (long) counts[color][type] << 4 * ((swapColors ? color ^ 1 : color) * 6 + type);
+            }
+        }
+        return key;
+    }
+
+    static long materialKey(Board board) {
+        long key = 0L;
+        for (int type = 0; type < 6; type++) {
+            key |= (long) Long.bitCount(board.pieces(Color.WHITE, 1 << type)) << 4 * type;
+            key |= (long) Long.bitCount(board.pieces(Color.BLACK, 1 << type)) << 4 * (6 + type);
+        }
+        return key;
+    }
+
+    private void insert(long key, TableFile wdl, TableFile dtz) {
+        int i = slot(key);
+        if (i < 0) {
+            i = (int) (key ^ key >>> 29) & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+        }
+        // symmetric material is inserted twice under the same key
+        keys[i] = key;
+        wdlTables[i] = wdl;
+        dtzTables[i] = dtz;
+    }
+
+    private int slot(long key) {
+        for (int i = (int) (key ^ key >>> 29) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    // most pieces, kings included, of any table found
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    public int getMappedFiles() {
+        synchronized (lock) {
+            return mapped.size();
+        }
+    }
+
+    // castling is never possible in a table, and they only go up to maxPieces
+    public boolean covers(Board board) {
+        return board.getCastlingRights() == 0 && Long.bitCount(board.occupied()) <= maxPieces;
+    }
+
+    // Win/draw/loss for the side to move, or UNKNOWN. The board is used for a short capture search and is left as
+    // it was.
+    public int probeWdl(Board board) {
+        if (!covers(board)) {
+            return UNKNOWN;
+        }
+        Scratch s = scratch.get();
+        s.state = TableFile.OK;
+        int wdl = search(board, s, false, 0);
+        return s.state == TableFile.FAIL ? UNKNOWN : wdl;
+    }
+
+    // Plies to the next capture or pawn move of the best play, signed by who wins, or 0 for draws: the number the
+    // fifty move rule counts against. UNKNOWN without the DTZ file.
+    public int probeDtz(Board board) {
+        if (!covers(board)) {
+            return UNKNOWN;
+        }
+        Scratch s = scratch.get();
+        int dtz = probeDtz(board, s, 0);
+        return s.state == TableFile.FAIL ? UNKNOWN : dtz;
+    }
+
+    // Exact result and a best move for the side to move, or null when the position is not covered. The best move
+    // wins by the shortest distance to zeroing, or loses by the longest; without DTZ files dtz is UNKNOWN and the
+    // move only keeps the result.
+    public TablebaseResult probe(Board board) {
+        if (!covers(board)) {
+            return null;
+        }
+        Scratch s = scratch.get();
+        int[] moves = s.moves;
+        int side = board.getSideToMove();
+        int n = board.generateLegalMoves(moves, 0);
+        if (n == 0) {
+            boolean mate = board.isCheck(side);
+            return new TablebaseResult(mate ? LOSS : DRAW, mate ? -1 : 0, Moves.NONE);
+        }
+
+        s.state = TableFile.OK;
+        int wdl = search(board, s, false, n);
+        if (s.state == TableFile.FAIL) {
+            return null;
+        }
+        int dtz = probeDtz(board, s, n);
+        boolean ranked = s.state != TableFile.FAIL;
+        if (!ranked) {
+            dtz = UNKNOWN;
+        }
+
+        int bestMove = Moves.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            int move = moves[i];
+            boolean zeroing = Moves.isCapture(move) || Moves.piece(move) == Piece.PAWN;
+            board.makeMove(move);
+            int score;
+            s.state = TableFile.OK;
+            if (!ranked) {
+                score = -search(board, s, false, n);
+            } else {
+                // distance counted from before the move
+                int d;
+                if (zeroing) {
+                    d = dtzBeforeZeroing(-search(board, s, false, n));
+                } else {
+                    d = -probeDtz(board, s, n);
+                    d += Integer.signum(d);
+                }
+                if (d == 2 && board.isCheck(board.getSideToMove()) && !board.hasLegalMove(board.getSideToMove())) {
+                    d = 1;
+                }
+                score = d > 0 ? 2000 - d : d < 0 ? -2000 - d : 0;
+            }
+            board.unmakeMove(move);
+            if (s.state == TableFile.FAIL) {
+                return null;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+        return new TablebaseResult(wdl, dtz, bestMove);
+    }
+
+    // same for a published snapshot, forked into a board of the calling thread without the game lock
+    public TablebaseResult probe(GameSnapshot snapshot) {
+        Board board = scratch.get().board;
+        snapshot.copyInto(board);
+        return probe(board);
+    }
+
+    // The table only has to be right where no capture does better, so the value is the best of the captures and
+    // the table. With zeroing set pawn moves count as well, as DTZ tables do not store positions won by one.
+    private int search(Board board, Scratch s, boolean zeroing, int offset) {
+        int[] moves = s.moves;
+        int n = board.generateLegalMoves(moves, offset);
+        int best = LOSS;
+        int searched = 0;
+        for (int i = offset; i < offset + n; i++) {
+            int move = moves[i];
+            if (!Moves.isCapture(move) && (!zeroing || Moves.piece(move) != Piece.PAWN)) {
+                continue;
+            }
+            searched++;
+            board.makeMove(move);
+            int value = -search(board, s, false, offset + n);
+            board.unmakeMove(move);
+            if (s.state == TableFile.FAIL) {
+                return DRAW;
+            }
+            if (value > best) {
+                best = value;
+                if (value >= WIN) {
+                    s.state = TableFile.ZEROING_BEST_MOVE;
+                    return value;
+                }
+            }
+        }
+
+        // with every legal move searched the table is not needed, and it could be wrong after en passant
+        boolean noMoreMoves = searched > 0 && searched == n;
+        int value;
+        if (noMoreMoves) {
+            value = best;
+        } else {
+            value = probeTable(board, s, false, DRAW);
+            if (s.state == TableFile.FAIL) {
+                return DRAW;
+            }
+        }
+        if (best >= value) {
+            s.state = best > DRAW || noMoreMoves ? TableFile.ZEROING_BEST_MOVE : TableFile.OK;
+            return best;
+        }
+        s.state = TableFile.OK;
+        return value;
+    }
+
+    private int probeDtz(Board board, Scratch s, int offset) {
+        s.state = TableFile.OK;
+        int wdl = search(board, s, true, offset);
+        if (s.state == TableFile.FAIL || wdl == DRAW) {
+            return 0;
+        }
+        if (s.state == TableFile.ZEROING_BEST_MOVE) {
+            return dtzBeforeZeroing(wdl);
+        }
+        int dtz = probeTable(board, s, true, wdl);
+        if (s.state == TableFile.FAIL) {
+            return 0;
+        }
+        if (s.state != TableFile.CHANGE_STM) {
+            return (dtz + (wdl == BLESSED_LOSS || wdl == CURSED_WIN ? 100 : 0)) * Integer.signum(wdl);
+        }
+
+        // the table holds the other side to move: one ply, keeping the shortest distance that keeps the result
+        int[] moves = s.moves;
+        int n = board.generateLegalMoves(moves, offset);
+        int min = 0xFFFF;
+        for (int i = offset; i < offset + n; i++) {
+            int move = moves[i];
+            boolean zeroing = Moves.isCapture(move) || Moves.piece(move) == Piece.PAWN;
+            board.makeMove(move);
+            dtz = zeroing
+                    ? -dtzBeforeZeroing(search(board, s, false, offset + n))
+                    : -probeDtz(board, s, offset + n);
+            if (dtz == 1 && board.isCheck(board.getSideToMove()) && !board.hasLegalMove(board.getSideToMove())) {
+                min = 1;
+            }
+            if (!zeroing) {
+                dtz += Integer.signum(dtz);
+            }
+            if (dtz < min && Integer.signum(dtz) == Integer.signum(wdl)) {
+                min = dtz;
+            }
+            board.unmakeMove(move);
+            if (s.state == TableFile.FAIL) {
+                return 0;
+            }
+        }
+        return min == 0xFFFF ? -1 : min;
+    }
+
+    private int probeTable(Board board, Scratch s, boolean dtz, int wdl) {
+        if (Long.bitCount(board.occupied()) == 2) {
+            return DRAW;
+        }
+        long key = materialKey(board);
+        int i = slot(key);
+        TableFile table = i < 0 ? null : dtz ? dtzTables[i] : wdlTables[i];
+        TableFile.Mapping m = table == null ? null : mapping(table);
+        if (m == null) {
+            s.state = TableFile.FAIL;
+            return 0;
+        }
+        return table.probe(m, board, key, wdl, s);
+    }
+
+    private TableFile.Mapping mapping(TableFile table) {
+        table.lastUsed = ++tick;
+        TableFile.Mapping m = table.mapping;
+        if (m != null || table.broken) {
+            return m;
+        }
+        synchronized (lock) {
+            m = table.mapping;
+            if (m != null || table.broken) {
+                return m;
+            }
+            try {
+                m = table.map();
+            } catch (IOException | RuntimeException e) {
+                table.broken = true;
+                return null;
+            }
+            if (mapped.size() >= maxMappedFiles) {
+                int lru = 0;
+                for (int i = 1; i < mapped.size(); i++) {
+                    if (mapped.get(i).lastUsed < mapped.get(lru).lastUsed) {
+                        lru = i;
+                    }
+                }
+                mapped.get(lru).mapping = null;
+                mapped.set(lru, mapped.get(mapped.size() - 1));
+                mapped.remove(mapped.size() - 1);
+            }
+            table.mapping = m;
+            mapped.add(table);
+            return m;
+        }
+    }
+
+    // DTZ of the position before a zeroing move that reaches wdl
+    private static int dtzBeforeZeroing(int wdl) {
+        return switch (wdl) {
+            case WIN -> 1;
+            case CURSED_WIN -> 101;
+            case BLESSED_LOSS -> -101;
+            case LOSS -> -1;
+            default -> 0;
+        };
+    }
+
+    static class Scratch {
+        final Board board = new Board();
+        // room for the moves of every ply of the deepest probe
+        final int[] moves = new int[Moves.MAX_MOVES * 16];
+        final int[] squares = new int[MAX_PIECES];
+        final int[] pieces = new int[MAX_PIECES];
+        int state;
+    }
+}
@@ -0,0 +1,24 @@
+package chessLibOptimized.tablebase;
+
+import lombok.Value;
+
+// Tablebase verdict for the side to move. wdl is one of the Tablebase results, dtz the plies to the next capture or
+// pawn move of best play signed like wdl (Tablebase.UNKNOWN without the DTZ file), and bestMove is packed as in
+// Moves, Moves.NONE when the side to move has no moves.
+@Value
+public class TablebaseResult {
+    int wdl;
+    int dtz;
+    int bestMove;
+
+    // what the game comes to under the fifty move rule, given the halfmove clock of the position
+    public int getOutcome(int halfmoveClock) {
+        if (wdl == Tablebase.CURSED_WIN || wdl == Tablebase.BLESSED_LOSS) {
+            return Tablebase.DRAW;
+        }
+        if (wdl != Tablebase.DRAW && dtz != Tablebase.UNKNOWN && Math.abs(dtz) + halfmoveClock > 100) {
+            return Tablebase.DRAW;
+        }
+        return wdl;
+    }
+}
@@ -0,0 +1,64 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Moves;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AttackMapTest {
+
+    // the cached maps against attackersTo on every square, through make, unmake and null moves
+    @Test
+    public void attackMapsAndCheckersFollowTheBoard() {
+        Random random = new Random(5);
+        int[] moves = new int[Moves.MAX_MOVES];
+        Board board = new Board();
+        Fen.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", board);
+        int[] played = new int[400];
+        int depth = 0;
+        for (int step = 0; step < 400; step++) {
+            check(board);
+            int n = board.generateLegalMoves(moves, 0);
+            if (n == 0 || depth > 0 && random.nextInt(4) == 0) {
+                if (depth == 0) {
+                    break;
+                }
+                board.unmakeMove(played[--depth]);
+            } else if (random.nextInt(10) == 0 && !board.isCheck(board.getSideToMove())) {
+                board.makeNullMove();
+                check(board);
+                board.unmakeNullMove();
+            } else {
+                played[depth++] = moves[random.nextInt(n)];
+                board.makeMove(played[depth - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void checkersListEveryChecker() {
+        Board board = new Board();
+        Fen.parse("4k3/8/8/8/1b6/8/4r3/R3K2R w KQ - 0 1", board);
+        assertEquals(1L << 12 | 1L << 25, board.checkers());
+        assertTrue(board.isCheck(Color.WHITE));
+        assertFalse(board.isCheck(Color.BLACK));
+        assertEquals(1L << 0, board.attackers(56, Color.WHITE));
+    }
+
+    private static void check(Board board) {
+        for (int color = Color.WHITE; color <= Color.BLACK; color <<= 1) {
+            long expected = 0L;
+            for (int sq = 0; sq < 64; sq++) {
+                if (board.attackers(sq, color) != 0) {
+                    expected |= 1L << sq;
+                }
+            }
+            assertEquals(expected, board.attacks(color));
+        }
+        int side = board.getSideToMove();
+        assertEquals(board.attackers(board.kingSquare(side), Color.opposite(side)), board.checkers());
+    }
+}
@@ -0,0 +1,71 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Evaluation;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Position;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EvaluationTest {
+
+    @Test
+    public void incrementalTermsMatchAFullWalkThroughMakeAndUnmake() {
+        Random random = new Random(13);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] played = new int[200];
+        Board board = new Board();
+        for (String fen : new String[]{
+                Fen.STARTING_POSITION,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1"}) {
+            Fen.parse(fen, board);
+            int start = Evaluation.evaluate(board);
+            int depth = 0;
+            for (; depth < played.length; depth++) {
+                assertEquals(Evaluation.evaluateFromScratch(board), Evaluation.evaluate(board));
+                int n = board.generateLegalMoves(moves, 0);
+                if (n == 0) {
+                    break;
+                }
+                played[depth] = moves[random.nextInt(n)];
+                board.makeMove(played[depth]);
+            }
+            Board copy = new Board();
+            Position position = new Position();
+            position.copyFrom(board);
+            position.copyInto(copy);
+            assertEquals(Evaluation.evaluate(board), Evaluation.evaluate(copy));
+            assertEquals(board.getMaterial(), copy.getMaterial());
+            while (depth > 0) {
+                board.unmakeMove(played[--depth]);
+            }
+            assertEquals(start, Evaluation.evaluate(board));
+        }
+    }
+
+    @Test
+    public void termsFollowMaterialAndPhase() {
+        Board board = new Board();
+        Fen.parse(Fen.STARTING_POSITION, board);
+        assertEquals(0, board.getMaterial());
+        assertEquals(0, board.getMiddlegameScore());
+        assertEquals(24, board.getPhase());
+
+        Fen.parse("4k3/8/8/8/8/8/8/3QK3 w - - 0 1", board);
+        assertEquals(Board.SEE_VALUE[4], board.getMaterial());
+        assertEquals(4, board.getPhase());
+        int white = Evaluation.evaluate(board);
+        board.setSideToMove(Color.BLACK);
+        assertEquals(-white, Evaluation.evaluate(board));
+
+        Game game = new Game();
+        game.loadGameFromFen("4k3/8/8/8/8/8/8/3QK3 b - - 0 1");
+        assertEquals(-white, game.evaluate());
+        assertEquals(white, game.getSnapshot().getEvaluation());
+    }
+}
@@ -0,0 +1,139 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Zobrist;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class FenTest {
+    private static final String[] FENS = {
+            Fen.STARTING_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "rnbqkb1r/pp1p1ppp/5n2/2pPp3/8/8/PPP1PPPP/RNBQKBNR w KQkq e6 0 4",
+            "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/5N2/PPPP1PPP/RNBQ1RK1 b kq - 5 4",
+            "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1",
+            "4k3/8/8/8/8/8/8/4K3 w - - 99 123",
+    };
+
+    @Test
+    public void stringAndBytesRoundTrip() {
+        Board board = new Board();
+        byte[] out = new byte[Fen.MAX_LENGTH];
+        for (String fen : FENS) {
+            Fen.parse(fen, board);
+            assertEquals(Zobrist.compute(board), board.hash());
+            StringBuilder sb = new StringBuilder();
+            Fen.toFen(board, sb);
+            assertEquals(fen, sb.toString());
+
+            byte[] bytes = ("xx" + fen + "yy").getBytes(StandardCharsets.US_ASCII);
+            Fen.parse(bytes, 2, fen.length(), board);
+            int length = Fen.toFen(board, out, 0);
+            assertEquals(fen, new String(out, 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void everyFieldIsRead() {
+        Board board = new Board();
+        Fen.parse("rnbqkb1r/pp1p1ppp/5n2/2pPp3/8/8/PPP1PPPP/RNBQKBNR w Kq e6 3 17", board);
+        assertEquals(Color.WHITE, board.getSideToMove());
+        assertEquals(Board.WHITE_KING_SIDE | Board.BLACK_QUEEN_SIDE, board.getCastlingRights());
+        assertEquals(44, board.getEnPassantSquare());
+        assertEquals(3, board.getHalfmoveClock());
+        assertEquals(17, board.getFullmoveNumber());
+    }
+
+    @Test
+    public void missingTrailingFieldsTakeDefaults() {
+        Board board = new Board();
+        Fen.parse("4k3/8/8/8/8/8/8/4K3 b", board);
+        assertEquals(Color.BLACK, board.getSideToMove());
+        assertEquals(0, board.getCastlingRights());
+        assertEquals(-1, board.getEnPassantSquare());
+        assertEquals("4k3/8/8/8/8/8/8/4K3 b - - 0 1", Fen.toFen(board));
+    }
+
+    @Test
+    public void clocksFollowTheMoves() {
+        Game game = new Game();
+        game.move(6, 0, 5, 2, 0);
+        game.move(6, 7, 5, 5, 0);
+        game.move(4, 1, 4, 3, 0);
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/5N2/PPPP1PPP/RNBQKB1R b KQkq e3 0 2", game.getFen());
+        game.undoLastMove();
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/8/5N2/PPPPPPPP/RNBQKB1R w KQkq - 2 2", game.getFen());
+    }
+
+    @Test
+    public void malformedInputIsRejected() {
+        String[] bad = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQxq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e9 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - a 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra",
+        };
+        for (String fen : bad) {
+            try {
+                new Game().loadGameFromFen(fen);
+                fail(fen);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void impossibleEnPassantSquaresAreRejected() {
+        String[] bad = {
+                // a pawn that did not just move: c4xd5 would be taken for en passant
+                "4k3/8/8/3p4/2P5/8/8/4K3 w - d5 0 1",
+                // the back rank, where b2xa1 would be
+                "r3k3/8/8/8/8/8/1p6/4K3 b - a1 0 1",
+                // the wrong rank for the side to move
+                "4k3/8/8/8/3Pp3/8/8/4K3 w - d3 0 1",
+                // no pawn in front of the square
+                "4k3/8/8/8/8/8/8/4K3 w - e6 0 1",
+                "4k3/8/8/4P3/8/8/8/4K3 w - e6 0 1",
+                // the square is taken
+                "4k3/8/4n3/4p3/8/8/8/4K3 w - e6 0 1",
+        };
+        for (String fen : bad) {
+            try {
+                Fen.parse(fen, new Board());
+                fail(fen);
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void failedLoadLeavesTheGameAlone() {
+        Game game = new Game();
+        assertTrue(game.move(4, 1, 4, 3, 0));
+        String fen = game.getFen();
+        long key = game.getZobristKey();
+        try {
+            game.loadGameFromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNX b KQkq - 0 1");
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertEquals(fen, game.getFen());
+        assertEquals(key, game.getSnapshot().getZobristKey());
+        assertEquals(1, game.getMoveCount());
+        game.undoLastMove();
+        assertEquals(Fen.STARTING_POSITION, game.getFen());
+    }
+}
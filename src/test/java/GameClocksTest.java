@@ -0,0 +1,136 @@
+import chessLibOptimized.Color;
+import chessLibOptimized.Game;
+import chessLibOptimized.clock.GameClocks;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GameClocksTest {
+    private long now = 1_000L;
+
+    @Test
+    public void flagFallsForTheSideToMoveOnceItsTimeRunsOut() {
+        List<Integer> flags = new ArrayList<>();
+        GameClocks clocks = new GameClocks(() -> now, 10L, 4, (game, color) -> flags.add(color));
+        Game game = new Game();
+        game.setWhitesTime(1_000L);
+        game.setBlacksTime(500L);
+        assertTrue(clocks.start(game));
+        assertFalse(clocks.start(game));
+
+        now += 400L;
+        game.move(4, 1, 4, 3, 0);
+        assertTrue(clocks.moved(game));
+        assertEquals(600L, game.getWhitesTime());
+        assertEquals(0, clocks.advance());
+
+        now += 300L;
+        assertEquals(200L, clocks.remainingMillis(game, Color.BLACK));
+        assertEquals(600L, clocks.remainingMillis(game, Color.WHITE));
+        assertEquals(0, clocks.advance());
+
+        now += 199L;
+        assertEquals(0, clocks.advance());
+        now += 11L;
+        assertEquals(1, clocks.advance());
+        assertEquals(List.of(Color.BLACK), flags);
+        assertEquals(0L, game.getBlacksTime());
+        assertFalse(clocks.isRunning(game));
+
+        game.move(4, 6, 4, 4, 0);
+        assertFalse(clocks.moved(game));
+    }
+
+    @Test
+    public void stoppedClocksNeverFire() {
+        List<Game> flagged = new ArrayList<>();
+        GameClocks clocks = new GameClocks(() -> now, 1L, 1, (game, color) -> flagged.add(game));
+        Game game = new Game();
+        game.setWhitesTime(50L);
+        clocks.start(game);
+        assertTrue(clocks.stop(game));
+        now += 1_000L;
+        assertEquals(0, clocks.advance());
+        assertTrue(flagged.isEmpty());
+        assertEquals(0, clocks.size());
+    }
+
+    @Test
+    public void throwingListenersAreReportedAndFireOnlyOnce() {
+        List<Game> flagged = new ArrayList<>();
+        GameClocks clocks = new GameClocks(() -> now, 1L, 1, (game, color) -> {
+            flagged.add(game);
+            throw new IllegalStateException("listener failed");
+        });
+        Game first = new Game();
+        first.setWhitesTime(10L);
+        Game second = new Game();
+        second.setWhitesTime(20L);
+        clocks.start(first);
+        clocks.start(second);
+
+        List<Throwable> reported = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        try {
+            now += 100L;
+            assertEquals(2, clocks.advance());
+            assertEquals(0, clocks.advance());
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        assertEquals(List.of(first, second), flagged);
+        assertEquals(2, reported.size());
+        assertEquals(0, clocks.size());
+    }
+
+    // deadlines spread over every level of the wheel, moved around and checked against the exact flag times
+    @Test
+    public void manyClocksFireOnTimeAcrossCascades() {
+        Map<Game, Long> fellAt = new HashMap<>();
+        GameClocks clocks = new GameClocks(() -> now, 1L, 8, (game, color) -> fellAt.put(game, now));
+        Random random = new Random(3);
+        long start = now;
+        Map<Game, Long> expected = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            Game game = new Game();
+            long time = 1 + (long) Math.pow(2, random.nextDouble() * 22);
+            game.setWhitesTime(time);
+            clocks.start(game);
+            expected.put(game, start + time);
+        }
+        // a few clocks get a move, so their deadline moves to black's time
+        List<Game> games = new ArrayList<>(expected.keySet());
+        now += 5L;
+        for (int i = 0; i < 200; i++) {
+            Game game = games.get(i);
+            if (expected.get(game) > now) {
+                game.setBlacksTime(100_000L + i);
+                game.move(4, 1, 4, 3, 0);
+                clocks.moved(game);
+                expected.put(game, now + 100_000L + i);
+            }
+        }
+
+        long last = expected.values().stream().mapToLong(Long::longValue).max().getAsLong();
+        while (now <= last) {
+            clocks.advance();
+            now += 1 + random.nextInt(700);
+        }
+        clocks.advance();
+
+        assertEquals(0, clocks.size());
+        for (Map.Entry<Game, Long> entry : expected.entrySet()) {
+            long fell = fellAt.get(entry.getKey());
+            assertTrue(fell >= entry.getValue());
+            assertTrue(fell <= entry.getValue() + 700);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.codec.GameCodec;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GameCodecTest {
+
+    @Test
+    public void randomGamesRoundTrip() {
+        Random random = new Random(7);
+        int[] moves = new int[Moves.MAX_MOVES];
+        for (String fen : new String[]{
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1"}) {
+            Game game = new Game();
+            game.loadGameFromFen(fen);
+            for (int ply = 0; ply < 120; ply++) {
+                int n = game.generateLegalMoves(moves);
+                if (n == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(n)];
+                int from = Moves.from(move);
+                int to = Moves.to(move);
+                assertTrue(game.move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.promotion(move)));
+            }
+
+            byte[] encoded = GameCodec.encode(game);
+            assertTrue(encoded.length < game.getMoveCount() + 80);
+            Game decoded = GameCodec.decode(encoded);
+            assertEquals(game.getFen(), decoded.getFen());
+            assertEquals(game.getMovesHistory(), decoded.getMovesHistory());
+
+            Board start = new Board();
+            String fenAfter = decoded.getFen();
+            int[] played = decoded.copyStartingBoardInto(start);
+            assertEquals(fen, Fen.toFen(start));
+            assertEquals(decoded.getMoveCount(), played.length);
+            assertEquals(fenAfter, decoded.getFen());
+            for (int move : played) {
+                start.makeMove(move);
+            }
+            assertEquals(fenAfter, Fen.toFen(start));
+        }
+    }
+
+    @Test
+    public void standardGamesNeedNoFenAndRecordsStream() {
+        Game first = new Game();
+        first.move(4, 1, 4, 3, 0);
+        first.move(4, 6, 4, 4, 0);
+        Game second = new Game();
+        second.move(3, 1, 3, 3, 0);
+
+        byte[] a = GameCodec.encode(first);
+        byte[] b = GameCodec.encode(second);
+        assertEquals(4, a.length);
+        assertEquals(3, b.length);
+
+        ByteBuffer stream = ByteBuffer.allocate(a.length + b.length).put(a).put(b).flip();
+        assertEquals(first.getFen(), GameCodec.decode(stream).getFen());
+        assertEquals(second.getFen(), GameCodec.decode(stream).getFen());
+        assertFalse(stream.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedRecordsAreRejected() {
+        Game game = new Game();
+        game.move(4, 1, 4, 3, 0);
+        byte[] encoded = GameCodec.encode(game);
+        GameCodec.decode(Arrays.copyOf(encoded, encoded.length - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfRangeIndexesAreRejected() {
+        GameCodec.decode(new byte[]{(byte) (GameCodec.VERSION << 4), 1, 20});
+    }
+}
@@ -0,0 +1,78 @@
+import chessLibOptimized.Game;
+import chessLibOptimized.registry.GameRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GameRegistryTest {
+
+    @Test
+    public void gamesAreFoundByIdAndByEitherPlayer() {
+        GameRegistry registry = new GameRegistry();
+        UUID alice = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        UUID carol = UUID.randomUUID();
+        Game first = registry.create(alice, bob);
+        Game second = registry.create(carol, alice);
+
+        assertSame(first, registry.get(first.getUuid()));
+        assertEquals(2, registry.gamesOf(alice).size());
+        assertEquals(List.of(first), registry.gamesOf(bob));
+        assertFalse(registry.register(first));
+
+        assertTrue(registry.setPlayers(second.getUuid(), carol, bob));
+        assertEquals(List.of(first), registry.gamesOf(alice));
+        assertEquals(2, registry.gamesOf(bob).size());
+        assertEquals(bob, second.getBlackPlayerUuid());
+
+        assertSame(first, registry.remove(first.getUuid()));
+        assertNull(registry.remove(first.getUuid()));
+        assertTrue(registry.gamesOf(alice).isEmpty());
+        assertEquals(List.of(second), registry.gamesOf(bob));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void concurrentCreateAndRemoveKeepTheIndexesConsistent() throws InterruptedException {
+        GameRegistry registry = new GameRegistry();
+        UUID[] players = new UUID[16];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                List<Game> mine = new ArrayList<>();
+                for (int i = 0; i < 2000; i++) {
+                    mine.add(registry.create(players[(seed + i) % 16], players[(seed * 3 + i) % 16]));
+                    if (i % 2 == 1) {
+                        registry.remove(mine.remove(0).getUuid());
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, registry.size());
+        AtomicInteger swept = new AtomicInteger();
+        registry.forEach(game -> swept.incrementAndGet());
+        assertEquals(4000, swept.get());
+        int indexed = 0;
+        for (UUID player : players) {
+            for (Game game : registry.gamesOf(player)) {
+                assertSame(game, registry.get(game.getUuid()));
+                indexed += player.equals(game.getWhitePlayerUuid()) ? 1 : 0;
+            }
+        }
+        assertEquals(4000, indexed);
+    }
+}
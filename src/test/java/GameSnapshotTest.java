@@ -0,0 +1,120 @@
+import chessLibOptimized.Color;
+import chessLibOptimized.Game;
+import chessLibOptimized.GameSnapshot;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class GameSnapshotTest {
+
+    @Test
+    public void everyCommittedChangePublishesANewSnapshot() {
+        Game game = new Game();
+        GameSnapshot start = game.getSnapshot();
+        assertEquals(Color.WHITE, start.getTurn());
+        assertEquals(Moves.NONE, start.getLastMove());
+        assertEquals(Color.WHITE ^ Piece.KING, start.pieceAt(4, 0));
+        assertEquals(Color.BLACK ^ Piece.QUEEN, start.pieceAt(3, 7));
+
+        game.move(4, 1, 4, 3, 0);
+        GameSnapshot after = game.getSnapshot();
+        assertNotSame(start, after);
+        assertEquals(Color.BLACK, after.getTurn());
+        assertEquals(1, after.getMoveCount());
+        assertEquals(game.getMove(0), after.getLastMove());
+        assertEquals(game.getZobristKey(), after.getZobristKey());
+        assertEquals(0, after.pieceAt(4, 1));
+        assertEquals(Color.WHITE ^ Piece.PAWN, after.pieceAt(4, 3));
+        // the old snapshot is untouched
+        assertEquals(Color.WHITE ^ Piece.PAWN, start.pieceAt(4, 1));
+
+        game.setWhitesTime(60_000L);
+        assertEquals(60_000L, game.getSnapshot().getWhitesTime());
+        game.undoLastMove();
+        assertEquals(start.getZobristKey(), game.getSnapshot().getZobristKey());
+
+        game.loadGameFromFen("4k3/8/8/8/8/8/8/4K2r w - - 0 1");
+        assertTrue(game.getSnapshot().isCheck());
+    }
+
+    @Test
+    public void gameGettersReadTheSnapshot() {
+        Game game = new Game();
+        game.move(4, 1, 4, 3, 0);
+        game.move(4, 6, 4, 4, 0);
+        game.move(4, 0, 4, 1, 0);
+        GameSnapshot snapshot = game.getSnapshot();
+        assertEquals(Color.BLACK, game.getTurn());
+        assertEquals(3, game.getMoveCount());
+        assertEquals(4, game.getWhiteKingX());
+        assertEquals(1, game.getWhiteKingY());
+        assertEquals(4, game.getBlackKingX());
+        assertEquals(7, game.getBlackKingY());
+        assertEquals(4 + 8, snapshot.getWhiteKingSquare());
+        assertFalse(game.isWhiteKingKingSideCastleAvailable());
+        assertFalse(game.isWhiteKingQueenSideCastleAvailable());
+        assertTrue(game.isBlackKingKingSideCastleAvailable());
+        assertTrue(game.isBlackKingQueenSideCastleAvailable());
+
+        game.setBlackKingQueenSideCastleAvailable(false);
+        assertFalse(game.isBlackKingQueenSideCastleAvailable());
+        game.setTurn(Color.WHITE);
+        assertEquals(Color.WHITE, game.getTurn());
+
+        game.setWhitesTime(1_000L);
+        game.setBlacksTime(2_000L);
+        game.setLastTime(500L);
+        game.setMovesTime(800L);
+        snapshot = game.getSnapshot();
+        assertEquals(1_000L, game.getWhitesTime());
+        assertEquals(1_700L, game.getBlacksTime());
+        assertEquals(snapshot.getBlacksTime(), game.getBlacksTime());
+        assertEquals(800L, game.getLastTime());
+    }
+
+    @Test
+    public void chessboardIsACopy() {
+        Game game = new Game();
+        game.getChessboard()[4][0] = 0;
+        assertEquals(Color.WHITE ^ Piece.KING, game.getChessboard()[4][0]);
+    }
+
+    @Test
+    public void spectatorsNeverSeeAHalfMadeMove() throws InterruptedException {
+        Game game = new Game();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread spectator = new Thread(() -> {
+            while (!done.get()) {
+                GameSnapshot snapshot = game.getSnapshot();
+                int kings = 0;
+                for (int x = 0; x < 8; x++) {
+                    for (int y = 0; y < 8; y++) {
+                        kings += Piece.getPieceType(snapshot.pieceAt(x, y)) == Piece.KING ? 1 : 0;
+                    }
+                }
+                // white's knight leaves g1 on the first of every four moves and is back on the third
+                int phase = snapshot.getMoveCount() % 4;
+                boolean knightHome = snapshot.pieceAt(6, 0) != 0;
+                if (kings != 2 || knightHome != (phase == 0 || phase == 3)) {
+                    failure.set("inconsistent snapshot after " + snapshot.getMoveCount() + " moves");
+                }
+            }
+        });
+        spectator.start();
+        for (int i = 0; i < 5000; i++) {
+            game.move(6, 0, 5, 2, 0);
+            game.move(6, 7, 5, 5, 0);
+            game.move(5, 2, 6, 0, 0);
+            game.move(5, 5, 6, 7, 0);
+        }
+        done.set(true);
+        spectator.join();
+        assertNull(failure.get());
+    }
+}
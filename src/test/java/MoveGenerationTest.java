@@ -0,0 +1,118 @@
+import chessLibOptimized.Bitboards;
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoveGenerationTest {
+
+    @Test
+    public void startingPositionHasTwentyMoves() {
+        Game game = new Game();
+        assertEquals(20, game.generateLegalMoves(new int[Moves.MAX_MOVES]));
+    }
+
+    @Test
+    public void kiwipeteHasFortyEightMovesIncludingBothCastles() {
+        Game game = new Game();
+        game.loadGameFromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = game.generateLegalMoves(buffer);
+        assertEquals(48, count);
+        int castles = 0;
+        for (int i = 0; i < count; i++) {
+            if ((Moves.flags(buffer[i]) & Moves.CASTLING) != 0) {
+                ++castles;
+            }
+        }
+        assertEquals(2, castles);
+    }
+
+    @Test
+    public void enPassantIsGeneratedAfterDoublePush() {
+        Game game = new Game();
+        game.loadGameFromFen("rnbqkbnr/ppp1pppp/8/4P3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+        assertTrue(game.move(5, 6, 5, 4, 0));
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = game.generateLegalMoves(buffer);
+        boolean found = false;
+        for (int i = 0; i < count; i++) {
+            if ((Moves.flags(buffer[i]) & Moves.EN_PASSANT) != 0) {
+                assertEquals(36, Moves.from(buffer[i]));
+                assertEquals(45, Moves.to(buffer[i]));
+                assertEquals(Piece.PAWN, Moves.captured(buffer[i]));
+                found = true;
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void promotionsAreGeneratedForEveryPiece() {
+        Game game = new Game();
+        game.loadGameFromFen("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = game.generateLegalMoves(buffer);
+        int promotions = 0;
+        for (int i = 0; i < count; i++) {
+            if (Moves.isPromotion(buffer[i])) {
+                ++promotions;
+                assertEquals(Piece.PAWN, Moves.piece(buffer[i]));
+            }
+        }
+        assertEquals(4, promotions);
+        assertEquals(7, count);
+    }
+
+    @Test
+    public void checkmatedSideHasNoMoves() {
+        Game game = new Game();
+        game.loadGameFromFen("rnbqkbnr/2pppQpp/8/8/2B5/8/PPPPPPPP/RNB1K1NR b KQkq - 0 1");
+        assertEquals(0, game.generateLegalMoves(new int[Moves.MAX_MOVES]));
+        assertTrue(game.isMate(Color.BLACK));
+    }
+
+    @Test
+    public void kingCannotStepBackAlongTheCheckingRay() {
+        Board board = new Board();
+        Fen.parse("4k3/8/8/8/8/8/8/r3K3 w - - 0 1", board);
+        assertEquals(1L << 11 | 1L << 12 | 1L << 13, board.legalTargets(4));
+        assertEquals(Moves.NONE, board.findMove(4, 5, 0));
+    }
+
+    @Test
+    public void enPassantThatUncoversTheKingIsIllegal() {
+        Board board = new Board();
+        Fen.parse("8/8/8/K2pP2r/8/8/8/7k w - d6 0 1", board);
+        assertEquals(1L << 44, board.legalTargets(36));
+        Fen.parse("8/8/8/3pP3/8/8/8/K6k w - d6 0 1", board);
+        assertEquals(1L << 43 | 1L << 44, board.legalTargets(36));
+    }
+
+    @Test
+    public void pinnedPiecesOnlyMoveAlongThePin() {
+        Board board = new Board();
+        Fen.parse("4k3/4r3/8/8/8/8/4R3/4K3 w - - 0 1", board);
+        assertEquals(Bitboards.FILE_A << 4 & ~0xFFFFL & ~(0xFFL << 56), board.legalTargets(12));
+        Fen.parse("4k3/8/8/8/7b/8/5N2/4K3 w - - 0 1", board);
+        assertEquals(0L, board.legalTargets(13));
+    }
+
+    @Test
+    public void doubleCheckLeavesOnlyKingMoves() {
+        Board board = new Board();
+        Fen.parse("4k3/8/8/8/1b6/8/8/R3K2r w - - 0 1", board);
+        assertEquals(2, Long.bitCount(board.checkers()));
+        int[] buffer = new int[Moves.MAX_MOVES];
+        int count = board.generateLegalMoves(buffer, 0);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Piece.KING, Moves.piece(buffer[i]));
+        }
+        assertEquals(2, count);
+    }
+}
@@ -0,0 +1,100 @@
+import chessLibOptimized.Bitboards;
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Game;
+import chessLibOptimized.Move;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Piece;
+import chessLibOptimized.Zobrist;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MoveHistoryTest {
+
+    @Test
+    public void historyIsReportedAsMoveObjects() {
+        Game game = new Game();
+        game.loadGameFromFen("r3k2r/8/8/8/4p3/8/3P4/R3K2R w KQkq - 0 1");
+        assertTrue(game.move(3, 1, 3, 3, 0));   // d2d4
+        assertTrue(game.move(4, 3, 3, 2, 0));   // e4xd3 en passant
+        assertTrue(game.move(4, 0, 6, 0, 0));   // white castles king side
+        assertTrue(game.move(0, 7, 0, 0, 0));   // a8xa1
+
+        List<Move> history = game.getMovesHistory();
+        assertEquals(4, history.size());
+        assertEquals(new Move(3, 1, 3, 3, Color.WHITE ^ Piece.PAWN, 0), history.get(0));
+        assertEquals(new Move(4, 3, 3, 2, Color.BLACK ^ Piece.PAWN, 0), history.get(1));
+        assertEquals(new Move(4, 0, 6, 0, Color.WHITE ^ Piece.KING, 0), history.get(2));
+        assertEquals(new Move(0, 7, 0, 0, Color.BLACK ^ Piece.ROOK, Color.WHITE ^ Piece.ROOK), history.get(3));
+        assertEquals(history.get(3), game.getLastMove());
+        assertEquals("a8a1", Moves.toUci(game.getMove(3)));
+        assertEquals(4, game.getMoveCount());
+    }
+
+    @Test
+    public void undoRestoresCapturesEnPassantAndCastling() {
+        Game game = new Game();
+        game.loadGameFromFen("r3k2r/8/8/8/4p3/8/3P4/R3K2R w KQkq - 0 1");
+        long start = game.getZobristKey();
+        game.move(3, 1, 3, 3, 0);
+        game.move(4, 3, 3, 2, 0);
+        game.move(4, 0, 6, 0, 0);
+        game.move(0, 7, 0, 0, 0);
+
+        for (int i = 0; i < 4; i++) {
+            game.undoLastMove();
+        }
+        assertEquals(0, game.getMoveCount());
+        assertEquals(start, game.getZobristKey());
+        assertEquals(Color.WHITE, game.getTurn());
+        assertTrue(game.isWhiteKingKingSideCastleAvailable());
+        assertTrue(game.isWhiteKingQueenSideCastleAvailable());
+        assertTrue(game.isBlackKingKingSideCastleAvailable());
+        assertTrue(game.isBlackKingQueenSideCastleAvailable());
+        assertEquals(Move.BAD_MOVE, game.getLastMove());
+        assertEquals(Color.WHITE ^ Piece.ROOK, game.getChessboard()[0][0]);
+        assertEquals(Color.WHITE ^ Piece.ROOK, game.getChessboard()[7][0]);
+        assertEquals(Color.WHITE ^ Piece.KING, game.getChessboard()[4][0]);
+        assertEquals(Color.WHITE ^ Piece.PAWN, game.getChessboard()[3][1]);
+        assertEquals(Color.BLACK ^ Piece.PAWN, game.getChessboard()[4][3]);
+        assertEquals(Color.BLACK ^ Piece.ROOK, game.getChessboard()[0][7]);
+        assertEquals(0, game.getChessboard()[3][2]);
+        assertEquals(0, game.getChessboard()[6][0]);
+        assertEquals(0, game.getChessboard()[5][0]);
+    }
+
+    @Test
+    public void unmakeRestoresCapturingPromotionsAndTheHalfmoveClock() {
+        Game game = new Game();
+        game.loadGameFromFen("1n2k3/P7/8/8/8/8/8/4K1N1 w - - 0 1");
+        Board board = new Board();
+        game.copyBoardInto(board);
+        long key = board.hash();
+
+        int knightMove = board.findMove(Bitboards.square(6, 0), Bitboards.square(5, 2), 0);
+        board.makeMove(knightMove);
+        int kingMove = board.findMove(Bitboards.square(4, 7), Bitboards.square(3, 6), 0);
+        board.makeMove(kingMove);
+        assertEquals(2, board.getHalfmoveClock());
+        int promotion = board.findMove(Bitboards.square(0, 6), Bitboards.square(1, 7), Piece.ROOK);
+        board.makeMove(promotion);
+        assertEquals(Color.WHITE ^ Piece.ROOK, board.pieceAt(Bitboards.square(1, 7)));
+        assertEquals(0, board.getHalfmoveClock());
+        board.makeNullMove();
+
+        board.unmakeNullMove();
+        board.unmakeMove(promotion);
+        assertEquals(2, board.getHalfmoveClock());
+        board.unmakeMove(kingMove);
+        board.unmakeMove(knightMove);
+        assertEquals(0, board.getHalfmoveClock());
+        assertEquals(Color.WHITE ^ Piece.PAWN, board.pieceAt(Bitboards.square(0, 6)));
+        assertEquals(Color.BLACK ^ Piece.KNIGHT, board.pieceAt(Bitboards.square(1, 7)));
+        assertEquals(key, board.hash());
+        assertEquals(Zobrist.compute(board), board.hash());
+        assertEquals(0, board.undoDepth());
+    }
+}
@@ -0,0 +1,77 @@
+import chessLibOptimized.Game;
+import chessLibOptimized.perft.Perft;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class PerftTest {
+    public String fen;
+    public int depth;
+    public long nodes;
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+                // fen, depth, nodes
+                {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 4, 197281L},
+                {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3, 97862L},
+                {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674624L},
+                {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422333L},
+                {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 3, 62379L},
+                {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 3, 89890L},
+                {"8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1", 6, 1440467L}
+        });
+    }
+
+    public PerftTest(String fen, int depth, long nodes) {
+        this.fen = fen;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    @Test
+    public void perftTest() {
+        Game game = new Game();
+        game.loadGameFromFen(fen);
+        assertEquals(nodes, Perft.perft(game, depth));
+    }
+
+    @Test
+    public void divideTest() {
+        Game game = new Game();
+        game.loadGameFromFen(fen);
+        Map<Integer, Long> divide = Perft.divide(game, depth, ForkJoinPool.commonPool());
+        long total = 0;
+        for (long n : divide.values()) {
+            total += n;
+        }
+        assertEquals(nodes, total);
+    }
+
+    @Test
+    public void depthsOutsideTheBuffersAreRejected() {
+        Game game = new Game();
+        game.loadGameFromFen(fen);
+        assertEquals(1L, Perft.perft(game, 0));
+        try {
+            Perft.perft(game, -1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            Perft.divide(game, 0, ForkJoinPool.commonPool());
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
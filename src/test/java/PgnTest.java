@@ -0,0 +1,155 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.pgn.PgnImporter;
+import chessLibOptimized.pgn.PgnReader;
+import chessLibOptimized.pgn.San;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PgnTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String OPERA_GAME = "[Event \"Paris\"]\n"
+            + "[White \"Paul Morphy\"]\n"
+            + "[Black \"Duke Karl / Count Isouard\"]\n"
+            + "[Result \"1-0\"]\n"
+            + "\n"
+            + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 {This is a weak move already.} 4. dxe5 Bxf3 5. Qxf3 dxe5\n"
+            + "6. Bc4 Nf6 7. Qb3 Qe7 8. Nc3 c6 9. Bg5 b5 (9... Qb4+ 10. Qxb4) 10. Nxb5 cxb5 11. Bxb5+ Nbd7\n"
+            + "12. O-O-O Rd8 13. Rxd7 Rxd7 14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ $1 Nxb8 17. Rd8# 1-0\n";
+
+    private static final String FROM_FEN = "[Event \"Promotion\"]\n"
+            + "[SetUp \"1\"]\n"
+            + "[FEN \"1n2k3/P7/8/8/8/8/8/4K1N1 w - - 0 1\"]\n"
+            + "\n"
+            + "1.axb8=R+ Kd7 2.Rxb7+?? ; a comment to the end of the line\n"
+            + "*\n";
+
+    @Test
+    public void sanIsResolvedAgainstThePosition() {
+        Board board = new Board();
+        Fen.parse("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", board);
+        assertEquals("e1g1", Moves.toUci(San.parse(board, "O-O")));
+        assertEquals("e1c1", Moves.toUci(San.parse(board, "0-0-0")));
+        assertEquals("e2a6", Moves.toUci(San.parse(board, "Bxa6")));
+        assertEquals("c3b1", Moves.toUci(San.parse(board, "Nb1")));
+        assertEquals("d5e6", Moves.toUci(San.parse(board, "dxe6")));
+        assertEquals("e5d3", Moves.toUci(San.parse(board, "Nd3!?")));
+        assertEquals(Moves.NONE, San.parse(board, "Qa8"));
+        assertEquals(Moves.NONE, San.parse(board, "Zd3"));
+
+        Fen.parse("k7/5P2/8/8/8/8/3K4/R6R w - - 0 1", board);
+        assertEquals(Moves.NONE, San.parse(board, "Re1"));
+        assertEquals("a1e1", Moves.toUci(San.parse(board, "Rae1")));
+        assertEquals("f7f8n", Moves.toUci(San.parse(board, "f8=N")));
+        assertEquals("f7f8q", Moves.toUci(San.parse(board, "f8Q")));
+        assertEquals("f7f8q", Moves.toUci(San.parse(board, "f8")));
+        assertEquals("h1h8", Moves.toUci(San.parse(board, "R1h8")));
+    }
+
+    @Test
+    public void readsTagsMovesAndResults() {
+        PgnReader reader = new PgnReader(buffer(OPERA_GAME + "\n" + FROM_FEN));
+        assertTrue(reader.next());
+        assertEquals("Paul Morphy", reader.getTag("White"));
+        assertEquals("1-0", reader.getResult());
+        assertNull(reader.getError());
+        assertEquals(33, reader.getMoveCount());
+        assertEquals("d1d8", Moves.toUci(reader.getMoves()[32]));
+        Game game = reader.toGame();
+        assertTrue(game.isMate(game.getTurn()));
+        assertEquals(33, game.getMoveCount());
+
+        assertTrue(reader.next());
+        assertEquals("*", reader.getResult());
+        assertNull(reader.getError());
+        assertArrayEquals(new String[]{"a7b8r", "e8d7", "b8b7"}, uci(reader.copyMoves()));
+        assertEquals("4K1N1", reader.toGame().getFen().split(" ")[0].split("/")[7]);
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void badMovesAreReportedAndTheNextGameStillReads() {
+        PgnReader reader = new PgnReader(buffer("[Event \"x\"]\n\n1. e4 e5 2. Ke3 Nc6 1-0\n\n" + OPERA_GAME));
+        assertTrue(reader.next());
+        assertEquals(2, reader.getMoveCount());
+        assertNotNull(reader.getError());
+        assertEquals("1-0", reader.getResult());
+        assertTrue(reader.next());
+        assertNull(reader.getError());
+        assertEquals(33, reader.getMoveCount());
+    }
+
+    @Test
+    public void gamesWithABadFenAreRejected() {
+        String badFen = FROM_FEN.replace("4K1N1 w", "4K1N1 x");
+        PgnReader reader = new PgnReader(buffer(badFen + "\n" + OPERA_GAME));
+        assertTrue(reader.next());
+        assertNotNull(reader.getError());
+        assertEquals(0, reader.getMoveCount());
+        assertEquals("*", reader.getResult());
+        try {
+            reader.toGame();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+
+        assertTrue(reader.next());
+        assertNull(reader.getError());
+        assertEquals(33, reader.toGame().getMoveCount());
+    }
+
+    @Test
+    public void importerReadsEveryGameOnce() throws IOException {
+        Path file = folder.newFile().toPath();
+        StringBuilder pgn = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            pgn.append(OPERA_GAME.replace("Paris", "Paris " + i)).append('\n');
+            pgn.append(FROM_FEN.replace("Promotion", "Promotion " + i)).append('\n');
+        }
+        Files.write(file, pgn.toString().getBytes(StandardCharsets.UTF_8));
+
+        ConcurrentHashMap<String, Integer> plies = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            long games = PgnImporter.importGames(file, pool, 700, reader -> {
+                assertNull(reader.getError());
+                assertNull(plies.put(reader.getTag("Event"), reader.getMoveCount()));
+            });
+            assertEquals(100, games);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(100, plies.size());
+        assertEquals(33, (int) plies.get("Paris 49"));
+        assertEquals(3, (int) plies.get("Promotion 0"));
+    }
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] uci(int[] moves) {
+        String[] result = new String[moves.length];
+        for (int i = 0; i < moves.length; i++) {
+            result[i] = Moves.toUci(moves[i]);
+        }
+        return result;
+    }
+}
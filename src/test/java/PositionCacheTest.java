@@ -0,0 +1,86 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.cache.PositionCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PositionCacheTest {
+
+    @Test
+    public void resultsMatchTheBoardAndRepeatsHit() {
+        PositionCache cache = new PositionCache(1024);
+        Board board = new Board();
+        int[] moves = new int[Moves.MAX_MOVES];
+
+        Fen.parse("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3", board);
+        PositionCache.Result mate = cache.lookup(board);
+        assertTrue(mate.isCheck());
+        assertTrue(mate.isMate());
+        assertEquals(0, mate.getMoveCount());
+
+        Fen.parse("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", board);
+        assertTrue(cache.lookup(board).isStalemate());
+
+        Fen.parse(Fen.STARTING_POSITION, board);
+        PositionCache.Result start = cache.lookup(board);
+        assertFalse(start.isCheck());
+        assertEquals(20, start.copyMoves(moves));
+        assertSame(start, cache.lookup(board));
+
+        PositionCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(3, stats.getSize());
+        assertEquals(0, stats.getEvictions());
+    }
+
+    @Test
+    public void fullSetsEvictUnreferencedEntriesFirst() {
+        PositionCache cache = new PositionCache(8);
+        Game game = new Game();
+        Board board = new Board();
+        game.copyBoardInto(board);
+        PositionCache.Result hot = cache.lookup(board);
+        cache.lookup(board);
+
+        // a walk of knight moves, a new position on every ply
+        int[][] walk = {{6, 0, 5, 2}, {6, 7, 5, 5}, {5, 2, 6, 4}, {5, 5, 6, 3}, {6, 4, 7, 6}, {6, 3, 7, 1},
+                {1, 0, 2, 2}, {1, 7, 2, 5}, {2, 2, 1, 4}, {2, 5, 1, 3}};
+        for (int[] m : walk) {
+            assertTrue(game.move(m[0], m[1], m[2], m[3], 0));
+            game.copyBoardInto(board);
+            cache.lookup(board);
+        }
+        assertEquals(8, cache.getStats().getSize());
+        assertTrue(cache.getStats().getEvictions() > 0);
+
+        game.loadGameFromFen(Fen.STARTING_POSITION);
+        game.copyBoardInto(board);
+        assertSame(hot, cache.lookup(board));
+    }
+
+    @Test
+    public void gamesAndSnapshotsShareTheCache() {
+        PositionCache cache = new PositionCache(1024);
+        Game first = new Game();
+        Game second = new Game();
+        first.setPositionCache(cache);
+        second.setPositionCache(cache);
+        int[] moves = new int[Moves.MAX_MOVES];
+
+        assertFalse(first.isMate(first.getTurn()));
+        assertEquals(20, second.generateLegalMoves(moves));
+        assertEquals(1, cache.getStats().getHits());
+
+        first.move(5, 1, 5, 2, 0);
+        first.move(4, 6, 4, 4, 0);
+        first.move(6, 1, 6, 3, 0);
+        first.move(3, 7, 7, 3, 0);
+        assertTrue(first.isMate(first.getTurn()));
+        assertTrue(cache.lookup(first.getSnapshot()).isMate());
+        assertEquals(0, first.generateLegalMoves(moves));
+    }
+}
@@ -0,0 +1,71 @@
+import chessLibOptimized.batch.PositionClassifier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PositionClassifierTest {
+    private static final String INPUT = String.join("\n",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - bm e2a6; id \"kiwipete\";",
+            "rnbqkbnr/2pppQpp/8/8/2B5/8/PPPPPPPP/RNB1K1NR b KQkq - 0 1\r",
+            "7k/5Q2/6K1/8/8/8/8/8 b - -",
+            "",
+            "not a position",
+            "rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq - 0 2",
+            "4k3/8/8/8/8/8/8/4K2R b K - 0 1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void classifiesEveryLineInOrder() throws IOException {
+        // tiny chunks, so lines straddle the nominal chunk boundaries
+        for (int chunkSize : new int[]{1, 50, 100, PositionClassifier.DEFAULT_CHUNK_SIZE}) {
+            Path input = folder.newFile().toPath();
+            Path output = folder.newFile().toPath();
+            Files.write(input, INPUT.getBytes(StandardCharsets.US_ASCII));
+
+            ForkJoinPool pool = new ForkJoinPool(3);
+            PositionClassifier.Summary summary;
+            try {
+                summary = PositionClassifier.classify(input, output, pool, chunkSize);
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(8, summary.getPositions());
+            assertEquals(1, summary.getChecks());
+            assertEquals(1, summary.getMates());
+            assertEquals(1, summary.getStalemates());
+            assertEquals(2, summary.getInvalid());
+
+            ByteBuffer result = ByteBuffer.wrap(Files.readAllBytes(output));
+            assertEquals(PositionClassifier.MAGIC, result.getInt());
+            assertEquals(PositionClassifier.VERSION, result.getInt());
+            assertEquals(8, result.getLong());
+            int[][] expected = {
+                    {0, 20},
+                    {0, 48},
+                    {PositionClassifier.IN_CHECK | PositionClassifier.MATE, 0},
+                    {PositionClassifier.STALEMATE, 0},
+                    {PositionClassifier.INVALID, 0},
+                    {PositionClassifier.INVALID, 0},
+                    {0, 30},
+                    {0, 5},
+            };
+            for (int[] record : expected) {
+                assertEquals(record[0], result.get() & 0xFF);
+                assertEquals(record[1], result.get() & 0xFF);
+            }
+            assertFalse(result.hasRemaining());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Position;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PositionTest {
+
+    @Test
+    public void positionsRoundTripThroughBoards() {
+        Random random = new Random(11);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] forkedMoves = new int[Moves.MAX_MOVES];
+        Position position = new Position();
+        Position copy = new Position();
+        Board forked = new Board();
+        for (String fen : new String[]{
+                Fen.STARTING_POSITION,
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"}) {
+            Board board = new Board();
+            Fen.parse(fen, board);
+            for (int ply = 0; ply < 60; ply++) {
+                position.copyFrom(board);
+                position.copyInto(copy);
+                assertEquals(position, copy);
+                copy.copyInto(forked);
+
+                assertEquals(Fen.toFen(board), Fen.toFen(forked));
+                assertEquals(board.hash(), forked.hash());
+                assertEquals(board.kingSquare(Color.BLACK), forked.kingSquare(Color.BLACK));
+                int n = board.generateLegalMoves(moves, 0);
+                assertEquals(n, forked.generateLegalMoves(forkedMoves, 0));
+                for (int sq = 0; sq < 64; sq++) {
+                    assertEquals(board.pieceAt(sq), position.pieceAt(sq));
+                }
+                if (n == 0) {
+                    break;
+                }
+                board.makeMove(moves[random.nextInt(n)]);
+            }
+        }
+    }
+
+    @Test
+    public void gamesForkWithoutSharingState() {
+        Game game = new Game();
+        game.move(4, 1, 4, 3, 0);
+        Board forked = new Board();
+        game.copyBoardInto(forked);
+        Position position = new Position();
+        game.copyPositionInto(position);
+
+        game.move(4, 6, 4, 4, 0);
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", Fen.toFen(forked));
+        forked.makeMove(forked.findMove(52, 36, 0));
+        assertEquals(game.getZobristKey(), forked.hash());
+        assertEquals(1, position.getFullmoveNumber());
+        assertNotEquals(game.getZobristKey(), position.hash());
+    }
+}
@@ -0,0 +1,82 @@
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.search.ParallelSearch;
+import chessLibOptimized.search.Search;
+import chessLibOptimized.search.SearchLimits;
+import chessLibOptimized.search.SearchResult;
+import chessLibOptimized.search.TranspositionTable;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchTest {
+
+    private static SearchResult search(String fen, SearchLimits limits) {
+        Game game = new Game();
+        game.loadGameFromFen(fen);
+        return new Search(new TranspositionTable(16)).search(game, limits);
+    }
+
+    @Test
+    public void findsMateInOne() {
+        SearchResult result = search("r1bqkbnr/pppp1ppp/2n5/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 0 1", SearchLimits.depth(4));
+        assertEquals("h5f7", Moves.toUci(result.getBestMove()));
+        assertEquals(Search.MATE - 1, result.getScore());
+        assertTrue(result.isMateScore());
+    }
+
+    @Test
+    public void findsBackRankMateInTwo() {
+        SearchResult result = search("r5k1/5ppp/8/8/8/8/4RPPP/4R1K1 w - - 0 1", SearchLimits.depth(6));
+        assertEquals(Search.MATE - 3, result.getScore());
+        assertEquals(3, result.getPrincipalVariation().length);
+    }
+
+    @Test
+    public void winsAHangingQueen() {
+        SearchResult result = search("rnb1kbnr/pppp1ppp/8/4p1q1/4P3/3P4/PPP2PPP/RNBQKBNR w KQkq - 0 1", SearchLimits.depth(4));
+        assertEquals("c1g5", Moves.toUci(result.getBestMove()));
+        assertTrue(result.getScore() > 500);
+    }
+
+    @Test
+    public void principalVariationIsPlayable() {
+        Game game = new Game();
+        SearchResult result = new Search(new TranspositionTable(16)).search(game, SearchLimits.depth(5));
+        assertEquals(result.getBestMove(), result.getPrincipalVariation()[0]);
+        for (int move : result.getPrincipalVariation()) {
+            int from = Moves.from(move);
+            int to = Moves.to(move);
+            assertTrue(game.move(from & 7, from >>> 3, to & 7, to >>> 3, Moves.promotion(move)));
+        }
+    }
+
+    @Test
+    public void respectsTheNodeBudget() {
+        SearchResult result = search("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", SearchLimits.nodes(20_000));
+        assertTrue(result.getNodes() < 22_000);
+        assertNotEquals(Moves.NONE, result.getBestMove());
+    }
+
+    @Test
+    public void reportsMateAndStalemateWithoutAMove() {
+        assertEquals(Moves.NONE, search("rnbqkbnr/2pppQpp/8/8/2B5/8/PPPPPPPP/RNB1K1NR b KQkq - 0 1", SearchLimits.depth(3)).getBestMove());
+        assertEquals(0, search("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1", SearchLimits.depth(3)).getScore());
+    }
+
+    @Test
+    public void parallelSearchAgreesWithTheSingleThreadedOne() {
+        Game game = new Game();
+        game.loadGameFromFen("r1bqkbnr/pppp1ppp/2n5/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 0 1");
+        try (ParallelSearch search = new ParallelSearch(new TranspositionTable(16), 3)) {
+            for (int i = 0; i < 3; i++) {
+                SearchResult result = search.search(game, SearchLimits.depth(4));
+                assertEquals("h5f7", Moves.toUci(result.getBestMove()));
+                assertEquals(Search.MATE - 1, result.getScore());
+            }
+            game.loadGameFromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+            SearchResult result = search.search(game, SearchLimits.nodes(20_000));
+            assertTrue(result.getNodes() >= 20_000);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Moves;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SeeTest {
+
+    @Test
+    public void exchangesAreResolvedWithXrays() {
+        Board board = new Board();
+        Fen.parse("1k1r4/1pp4p/p7/4p3/8/P5P1/1PP4P/2K1R3 w - - 0 1", board);
+        assertEquals(100, board.see(board.findMove(4, 36, 0)));
+
+        // Nxe5 Nxe5 Rxe5 Bxe5 Qxe5 Qxe5, with the queens behind the rook and the bishop
+        Fen.parse("1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1", board);
+        int move = board.findMove(19, 36, 0);
+        assertEquals(-225, board.see(move));
+        assertTrue(board.seeGreaterOrEqual(move, -225));
+        assertFalse(board.seeGreaterOrEqual(move, -224));
+
+        Fen.parse("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1", board);
+        assertEquals(875, board.see(board.findMove(49, 57, 16)));
+
+        // the king cannot take back while the rook still covers the square
+        Fen.parse("8/8/8/3k4/4p3/8/4R3/4RK2 w - - 0 1", board);
+        assertEquals(100, board.see(board.findMove(12, 28, 0)));
+    }
+
+    @Test
+    public void seeGreaterOrEqualAgreesWithSee() {
+        Random random = new Random(9);
+        int[] moves = new int[Moves.MAX_MOVES];
+        Board board = new Board();
+        for (String fen : new String[]{
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8",
+                "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"}) {
+            Fen.parse(fen, board);
+            for (int ply = 0; ply < 40; ply++) {
+                int n = board.generateLegalMoves(moves, 0);
+                if (n == 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    int see = board.see(moves[i]);
+                    for (int threshold = -1000; threshold <= 1000; threshold += 25) {
+                        assertEquals(see >= threshold, board.seeGreaterOrEqual(moves[i], threshold));
+                    }
+                }
+                board.makeMove(moves[random.nextInt(n)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Color;
+import chessLibOptimized.Fen;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.tablebase.Tablebase;
+import chessLibOptimized.tablebase.TablebaseResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class TablebaseTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // A three piece table where every position holds the same value: white to move wins, black to move loses. Only
+    // the headers are real, which is enough to check everything around the decoding of the values.
+    private static byte[] singleValueTable(boolean dtz, int piece) {
+        byte[] file = new byte[64];
+        if (dtz) {
+            file[0] = (byte) 0xD7; file[1] = 0x66; file[2] = 0x0C; file[3] = (byte) 0xA5;
+        } else {
+            file[0] = 0x71; file[1] = (byte) 0xE8; file[2] = 0x23; file[3] = 0x5D;
+        }
+        file[4] = 1;                     // material differs by color, no pawns
+        file[5] = 0;                     // the leading group is encoded first
+        file[6] = 6 | 6 << 4;            // K
+        file[7] = (byte) (piece | piece << 4);
+        file[8] = (byte) (14 | 14 << 4); // k
+        file[10] = (byte) 0x80;          // single value, and for DTZ stored for white to move
+        file[11] = (byte) (dtz ? 5 : 4); // DTZ 5 moves, or WDL win
+        if (!dtz) {
+            file[12] = (byte) 0x80;
+            file[13] = 0;                // loss with black to move
+        }
+        return file;
+    }
+
+    // KQvK with white to move stored as a real compressed table: WIN everywhere except DRAW at every index divisible
+    // by 11 and at the indices in draws; black to move is a single valued LOSS. Three symbols, WIN "00", DRAW "01"
+    // and the pair WIN DRAW "1", in blocks of 1000 values, with a sparse index entry every 8192 values.
+    private static byte[] compressedTable(int... draws) {
+        int size = 31332; // the three unique pieces of KQvK
+        int perBlock = 1000;
+        int blockSize = 512;
+        int span = 8192;
+        int blocks = (size + perBlock - 1) / perBlock;
+        int sparse = (size + span - 1) / span;
+        int data = 128;
+        byte[] file = new byte[data + blocks * blockSize];
+        file[0] = 0x71; file[1] = (byte) 0xE8; file[2] = 0x23; file[3] = 0x5D;
+        file[4] = 1;
+        file[5] = 0;
+        file[6] = 6 | 6 << 4;
+        file[7] = 5 | 5 << 4;
+        file[8] = (byte) (14 | 14 << 4);
+
+        ByteBuffer out = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(10);
+        out.put((byte) 0).put((byte) 9).put((byte) 13).put((byte) 0).putInt(blocks);
+        out.put((byte) 2).put((byte) 1);             // symbol lengths 1..2
+        out.putShort((short) 2).putShort((short) 0); // lowest symbol of length 1 and of length 2
+        out.putShort((short) 3);
+        out.put(new byte[]{4, (byte) 0xF0, (byte) 0xFF}); // 0: leaf WIN
+        out.put(new byte[]{2, (byte) 0xF0, (byte) 0xFF}); // 1: leaf DRAW
+        out.put(new byte[]{0, 0x10, 0});                  // 2: 0 then 1
+        out.put((byte) 0);
+        out.put((byte) 0x80).put((byte) 0);          // black to move: single value LOSS
+        for (int k = 0; k < sparse; k++) {
+            int idx = k * span + span / 2;
+            out.putInt(idx / perBlock).putShort((short) (idx % perBlock));
+        }
+        for (int b = 0; b < blocks; b++) {
+            out.putShort((short) (Math.min(perBlock, size - b * perBlock) - 1));
+        }
+        assertTrue(out.position() <= data);
+
+        boolean[] draw = new boolean[size];
+        for (int i = 0; i < size; i += 11) {
+            draw[i] = true;
+        }
+        for (int i : draws) {
+            draw[i] = true;
+        }
+        for (int b = 0; b < blocks; b++) {
+            int bit = (data + b * blockSize) * 8;
+            int end = Math.min(size, (b + 1) * perBlock);
+            for (int i = b * perBlock; i < end; i++) {
+                if (!draw[i] && i + 1 < end && draw[i + 1]) {
+                    bit = putBits(file, bit, 1, 1);
+                    i++;
+                } else {
+                    bit = putBits(file, bit, draw[i] ? 1 : 0, 2);
+                }
+            }
+        }
+        return file;
+    }
+
+    private static int putBits(byte[] file, int bit, int code, int length) {
+        for (int i = length - 1; i >= 0; i--, bit++) {
+            if ((code >>> i & 1) != 0) {
+                file[bit >>> 3] |= 0x80 >>> (bit & 7);
+            }
+        }
+        return bit;
+    }
+
+    private Tablebase tablebase(int maxMappedFiles) throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Files.write(dir.resolve("KQvK.rtbw"), singleValueTable(false, 5));
+        Files.write(dir.resolve("KQvK.rtbz"), singleValueTable(true, 5));
+        Files.write(dir.resolve("KRvK.rtbw"), singleValueTable(false, 4));
+        Files.write(dir.resolve("KBvK.rtbw"), new byte[64]);
+        return new Tablebase(dir, maxMappedFiles);
+    }
+
+    private static Board board(String fen) {
+        Board board = new Board();
+        Fen.parse(fen, board);
+        return board;
+    }
+
+    @Test
+    public void probesFollowColorsAndCaptures() throws IOException {
+        Tablebase tablebase = tablebase(4);
+        assertEquals(3, tablebase.getTableCount());
+        assertEquals(3, tablebase.getMaxPieces());
+
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("7k/8/8/8/3Q4/8/8/K7 w - - 0 1")));
+        assertEquals(Tablebase.LOSS, tablebase.probeWdl(board("7k/8/8/8/3Q4/8/8/K7 b - - 0 1")));
+        // black's queen: the table is read with colors swapped
+        assertEquals(Tablebase.LOSS, tablebase.probeWdl(board("k7/8/8/3q4/8/8/8/7K w - - 0 1")));
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("k7/8/8/3q4/8/8/8/7K b - - 0 1")));
+        // the only move takes the queen, which the table does not know
+        assertEquals(Tablebase.DRAW, tablebase.probeWdl(board("7k/6Q1/8/8/8/8/8/K7 b - - 0 1")));
+
+        // DTZ in plies, and for black one ply more through the white to move table
+        assertEquals(11, tablebase.probeDtz(board("7k/8/8/8/3Q4/8/8/K7 w - - 0 1")));
+        assertEquals(-12, tablebase.probeDtz(board("7k/8/8/8/3Q4/8/8/K7 b - - 0 1")));
+
+        assertEquals(Tablebase.UNKNOWN, tablebase.probeWdl(board("7k/8/8/8/3B4/8/8/K7 w - - 0 1")));
+        assertEquals(Tablebase.UNKNOWN, tablebase.probeWdl(board("7k/8/8/8/3N4/8/8/K7 w - - 0 1")));
+        assertEquals(Tablebase.UNKNOWN, tablebase.probeWdl(board("7k/8/8/8/3QR3/8/8/K7 w - - 0 1")));
+        assertEquals(Tablebase.UNKNOWN, tablebase.probeDtz(board("7k/8/8/8/3R4/8/8/K7 w - - 0 1")));
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("7k/8/8/8/3R4/8/8/K7 w - - 0 1")));
+    }
+
+    @Test
+    public void compressedTablesDecode() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        // Kb1 Qa7 kh8 is index (a7 - 1) * 62 + h8 - 2 = 2975, with kg8 2974: both walk back two blocks from the
+        // first sparse entry. Ke5 Qe1 kb8 maps to Kd4 Qh4 ka7, index (6 * 63 + 3 * 28 + 21) * 62 + 46 = 29992, which
+        // walks forward a block from the fourth.
+        Files.write(dir.resolve("KQvK.rtbw"), compressedTable(2974, 29992));
+        Tablebase tablebase = new Tablebase(dir, 4);
+
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("7k/Q7/8/8/8/8/8/1K6 w - - 0 1")));
+        assertEquals(Tablebase.DRAW, tablebase.probeWdl(board("6k1/Q7/8/8/8/8/8/1K6 w - - 0 1")));
+        assertEquals(Tablebase.DRAW, tablebase.probeWdl(board("1k6/8/8/4K3/8/8/8/4Q3 w - - 0 1")));
+        assertEquals(Tablebase.LOSS, tablebase.probeWdl(board("1k6/8/8/4K3/8/8/8/4Q3 b - - 0 1")));
+        // the same positions with colors swapped read the same entries
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("1k6/8/8/8/8/8/q7/7K b - - 0 1")));
+        assertEquals(Tablebase.DRAW, tablebase.probeWdl(board("1k6/8/8/8/8/8/q7/6K1 b - - 0 1")));
+        // mirrored left to right the first position is still index 2975
+        assertEquals(Tablebase.WIN, tablebase.probeWdl(board("k7/7Q/8/8/8/8/8/6K1 w - - 0 1")));
+    }
+
+    @Test
+    public void bestMovePrefersMate() throws IOException {
+        Tablebase tablebase = tablebase(4);
+        Board board = board("7k/8/6K1/8/8/8/8/Q7 w - - 0 1");
+        String fen = Fen.toFen(board);
+        TablebaseResult result = tablebase.probe(board);
+        assertEquals(fen, Fen.toFen(board));
+        assertEquals(Tablebase.WIN, result.getWdl());
+        assertEquals(11, result.getDtz());
+        assertEquals(Tablebase.WIN, result.getOutcome(0));
+        assertEquals(Tablebase.DRAW, result.getOutcome(95));
+
+        board.makeMove(result.getBestMove());
+        assertTrue(board.isCheck(Color.BLACK));
+        assertFalse(board.hasLegalMove(Color.BLACK));
+
+        result = tablebase.probe(board);
+        assertEquals(Tablebase.LOSS, result.getWdl());
+        assertEquals(Moves.NONE, result.getBestMove());
+
+        // without a DTZ file only the result is known
+        result = tablebase.probe(board("7k/8/8/8/3R4/8/8/K7 w - - 0 1"));
+        assertEquals(Tablebase.WIN, result.getWdl());
+        assertEquals(Tablebase.UNKNOWN, result.getDtz());
+        assertNotEquals(Moves.NONE, result.getBestMove());
+    }
+
+    @Test
+    public void mappedFilesAreBounded() throws IOException {
+        Tablebase tablebase = tablebase(1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Tablebase.WIN, tablebase.probeWdl(board("7k/8/8/8/3Q4/8/8/K7 w - - 0 1")));
+            assertEquals(Tablebase.WIN, tablebase.probeWdl(board("7k/8/8/8/3R4/8/8/K7 w - - 0 1")));
+            assertEquals(1, tablebase.getMappedFiles());
+        }
+    }
+
+    @Test
+    public void gamesReportTablebaseResults() throws IOException {
+        Game game = new Game();
+        assertNull(game.probeTablebase());
+        game.setTablebase(tablebase(4));
+        assertNull(game.probeTablebase());
+
+        game.loadGameFromFen("7k/8/6K1/8/8/8/8/Q7 w - - 0 1");
+        TablebaseResult result = game.probeTablebase();
+        assertEquals(Tablebase.WIN, result.getWdl());
+        int move = result.getBestMove();
+        assertTrue(game.move(Moves.from(move) & 7, Moves.from(move) >>> 3, Moves.to(move) & 7, Moves.to(move) >>> 3, 0));
+        assertTrue(game.isMate(Color.BLACK));
+    }
+}
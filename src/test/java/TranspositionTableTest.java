@@ -0,0 +1,86 @@
+import chessLibOptimized.search.TranspositionTable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void storedEntryIsFoundWithAllFields() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789ABCDEFL;
+        table.store(key, 0xABCDE, -1234, 17, TranspositionTable.LOWER);
+
+        long data = table.probe(key);
+        assertNotEquals(TranspositionTable.MISS, data);
+        assertEquals(0xABCDE, TranspositionTable.move(data));
+        assertEquals(-1234, TranspositionTable.score(data));
+        assertEquals(17, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        assertEquals(TranspositionTable.MISS, table.probe(key ^ 1));
+    }
+
+    @Test
+    public void depthPreferredKeepsDeeperEntriesOfTheSameSearch() {
+        TranspositionTable table = new TranspositionTable(1, TranspositionTable.ReplacementPolicy.DEPTH_PREFERRED);
+        // five keys landing in the same bucket: only the low bits differ
+        long base = 0x7777_0000_0000_0000L;
+        for (int i = 0; i < 4; i++) {
+            table.store(base + i, 0, 0, 10 + i, TranspositionTable.EXACT);
+        }
+        table.store(base + 4, 0, 0, 1, TranspositionTable.EXACT);
+        assertEquals(TranspositionTable.MISS, table.probe(base + 4));
+
+        table.newSearch();
+        table.store(base + 4, 0, 0, 1, TranspositionTable.EXACT);
+        assertNotEquals(TranspositionTable.MISS, table.probe(base + 4));
+        // the shallowest old entry was the one evicted
+        assertEquals(TranspositionTable.MISS, table.probe(base));
+        assertNotEquals(TranspositionTable.MISS, table.probe(base + 3));
+    }
+
+    @Test
+    public void clearEmptiesTheTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(42L, 1, 2, 3, TranspositionTable.EXACT);
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.probe(42L));
+    }
+
+    @Test
+    public void concurrentWritersNeverProduceForeignEntries() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    // every key carries its own score, so any accepted entry must agree with it
+                    long key = random.nextLong() & 0xFFFF_0000_0000_FFFFL;
+                    int score = (int) (key & 0x3FFF);
+                    table.store(key, 0, score, 1, TranspositionTable.EXACT);
+                    long probed = key ^ random.nextInt(4);
+                    long data = table.probe(probed);
+                    if (data != TranspositionTable.MISS && TranspositionTable.score(data) != (int) (probed & 0x3FFF)) {
+                        synchronized (errors) {
+                            errors.add(new AssertionError("corrupt entry"));
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+import chessLibOptimized.Board;
+import chessLibOptimized.Game;
+import chessLibOptimized.Moves;
+import chessLibOptimized.Zobrist;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ZobristTest {
+
+    @Test
+    public void incrementalKeyMatchesRecomputedKeyThroughMakeAndUnmake() {
+        Game game = new Game();
+        game.loadGameFromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        Board board = new Board();
+        game.copyBoardInto(board);
+        assertEquals(Zobrist.compute(board), board.hash());
+
+        Random random = new Random(42);
+        int[] moves = new int[Moves.MAX_MOVES];
+        int[] played = new int[200];
+        long[] keys = new long[200];
+        int plies = 0;
+        while (plies < played.length) {
+            int n = board.generateLegalMoves(moves, 0);
+            if (n == 0) {
+                break;
+            }
+            keys[plies] = board.hash();
+            played[plies] = moves[random.nextInt(n)];
+            board.makeMove(played[plies++]);
+            assertEquals(Zobrist.compute(board), board.hash());
+        }
+        while (plies > 0) {
+            --plies;
+            board.unmakeMove(played[plies]);
+            assertEquals(keys[plies], board.hash());
+            assertEquals(Zobrist.compute(board), board.hash());
+        }
+    }
+
+    @Test
+    public void transpositionsShareAKey() {
+        Game first = new Game();
+        first.move(6, 0, 5, 2, 0);
+        first.move(6, 7, 5, 5, 0);
+        first.move(1, 0, 2, 2, 0);
+        first.move(1, 7, 2, 5, 0);
+
+        Game second = new Game();
+        second.move(1, 0, 2, 2, 0);
+        second.move(1, 7, 2, 5, 0);
+        second.move(6, 0, 5, 2, 0);
+        second.move(6, 7, 5, 5, 0);
+
+        assertEquals(first.getZobristKey(), second.getZobristKey());
+        assertNotEquals(new Game().getZobristKey(), first.getZobristKey());
+    }
+
+    @Test
+    public void loadGameFromFenAndUndoKeepTheKey() {
+        Game game = new Game();
+        long start = game.getZobristKey();
+        Game loaded = new Game();
+        loaded.loadGameFromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        assertEquals(start, loaded.getZobristKey());
+
+        game.move(6, 0, 5, 2, 0);
+        assertNotEquals(start, game.getZobristKey());
+        game.undoLastMove();
+        assertEquals(start, game.getZobristKey());
+    }
+}